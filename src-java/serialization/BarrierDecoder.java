@@ -8,7 +8,7 @@ import org.agrona.DirectBuffer;
 @SuppressWarnings("all")
 public class BarrierDecoder
 {
-    public static final int BLOCK_LENGTH = 18;
+    public static final int BLOCK_LENGTH = 20;
     public static final int TEMPLATE_ID = 15;
     public static final int SCHEMA_ID = 1;
     public static final int SCHEMA_VERSION = 0;
@@ -241,6 +241,112 @@ public class BarrierDecoder
     }
 
 
+    public static int completedId()
+    {
+        return 20;
+    }
+
+    public static int completedSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int completedEncodingOffset()
+    {
+        return 18;
+    }
+
+    public static int completedEncodingLength()
+    {
+        return 1;
+    }
+
+    public static String completedMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static byte completedNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte completedMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte completedMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public byte completed()
+    {
+        return buffer.getByte(offset + 18);
+    }
+
+
+    public static int hasRecoverCoordinatesId()
+    {
+        return 21;
+    }
+
+    public static int hasRecoverCoordinatesSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int hasRecoverCoordinatesEncodingOffset()
+    {
+        return 19;
+    }
+
+    public static int hasRecoverCoordinatesEncodingLength()
+    {
+        return 1;
+    }
+
+    public static String hasRecoverCoordinatesMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static byte hasRecoverCoordinatesNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte hasRecoverCoordinatesMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte hasRecoverCoordinatesMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public byte hasRecoverCoordinates()
+    {
+        return buffer.getByte(offset + 19);
+    }
+
+
     public static int payloadBytesId()
     {
         return 19;
@@ -303,28 +409,6 @@ public class BarrierDecoder
         return bytesCopied;
     }
 
-    public String payloadBytes()
-    {
-        final int headerLength = 4;
-        final int limit = parentMessage.limit();
-        final int dataLength = (int)(buffer.getInt(limit, java.nio.ByteOrder.LITTLE_ENDIAN) & 0xFFFF_FFFFL);
-        parentMessage.limit(limit + headerLength + dataLength);
-        final byte[] tmp = new byte[dataLength];
-        buffer.getBytes(limit + headerLength, tmp, 0, dataLength);
-
-        final String value;
-        try
-        {
-            value = new String(tmp, "UTF-8");
-        }
-        catch (final java.io.UnsupportedEncodingException ex)
-        {
-            throw new RuntimeException(ex);
-        }
-
-        return value;
-    }
-
 
     public String toString()
     {
@@ -369,9 +453,20 @@ public class BarrierDecoder
         builder.append("destId=");
         builder.append(destId());
         builder.append('|');
-        //Token{signal=BEGIN_VAR_DATA, name='payloadBytes', description='null', id=19, version=0, encodedLength=0, offset=18, componentTokenCount=6, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=BEGIN_FIELD, name='completed', description='null', id=20, version=0, encodedLength=0, offset=18, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int8', description='null', id=-1, version=0, encodedLength=1, offset=18, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT8, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("completed=");
+        builder.append(completed());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='hasRecoverCoordinates', description='null', id=21, version=0, encodedLength=0, offset=19, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int8', description='null', id=-1, version=0, encodedLength=1, offset=19, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT8, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("hasRecoverCoordinates=");
+        builder.append(hasRecoverCoordinates());
+        builder.append('|');
+        //Token{signal=BEGIN_VAR_DATA, name='payloadBytes', description='null', id=19, version=0, encodedLength=0, offset=20, componentTokenCount=6, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
         builder.append("payloadBytes=");
-        builder.append(payloadBytes());
+        builder.append(payloadBytesLength());
+        builder.append(" bytes");
 
         limit(originalLimit);
 
@@ -8,7 +8,7 @@ import org.agrona.DirectBuffer;
 @SuppressWarnings("all")
 public class BarrierEncoder
 {
-    public static final int BLOCK_LENGTH = 18;
+    public static final int BLOCK_LENGTH = 20;
     public static final int TEMPLATE_ID = 15;
     public static final int SCHEMA_ID = 1;
     public static final int SCHEMA_VERSION = 0;
@@ -173,6 +173,70 @@ public class BarrierEncoder
     }
 
 
+    public static int completedEncodingOffset()
+    {
+        return 18;
+    }
+
+    public static int completedEncodingLength()
+    {
+        return 1;
+    }
+
+    public static byte completedNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte completedMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte completedMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public BarrierEncoder completed(final byte value)
+    {
+        buffer.putByte(offset + 18, value);
+        return this;
+    }
+
+
+    public static int hasRecoverCoordinatesEncodingOffset()
+    {
+        return 19;
+    }
+
+    public static int hasRecoverCoordinatesEncodingLength()
+    {
+        return 1;
+    }
+
+    public static byte hasRecoverCoordinatesNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte hasRecoverCoordinatesMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte hasRecoverCoordinatesMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public BarrierEncoder hasRecoverCoordinates(final byte value)
+    {
+        buffer.putByte(offset + 19, value);
+        return this;
+    }
+
+
     public static int payloadBytesId()
     {
         return 19;
@@ -232,33 +296,6 @@ public class BarrierEncoder
         return this;
     }
 
-    public BarrierEncoder payloadBytes(final String value)
-    {
-        final byte[] bytes;
-        try
-        {
-            bytes = value.getBytes("UTF-8");
-        }
-        catch (final java.io.UnsupportedEncodingException ex)
-        {
-            throw new RuntimeException(ex);
-        }
-
-        final int length = bytes.length;
-        if (length > 1073741824)
-        {
-            throw new IllegalArgumentException("length > max value for type: " + length);
-        }
-
-        final int headerLength = 4;
-        final int limit = parentMessage.limit();
-        parentMessage.limit(limit + headerLength + length);
-        buffer.putInt(limit, (int)length, java.nio.ByteOrder.LITTLE_ENDIAN);
-        buffer.putBytes(limit + headerLength, bytes, 0, length);
-
-        return this;
-    }
-
 
     public String toString()
     {
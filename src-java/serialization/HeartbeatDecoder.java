@@ -0,0 +1,872 @@
+/* Generated SBE (Simple Binary Encoding) message codec */
+package onyx.serialization;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.DirectBuffer;
+
+@javax.annotation.Generated(value = {"onyx.serialization.HeartbeatDecoder"})
+@SuppressWarnings("all")
+public class HeartbeatDecoder
+{
+    public static final int BLOCK_LENGTH = 66;
+    public static final int TEMPLATE_ID = 30;
+    public static final int SCHEMA_ID = 1;
+    public static final int SCHEMA_VERSION = 0;
+
+    private final HeartbeatDecoder parentMessage = this;
+    private DirectBuffer buffer;
+    protected int offset;
+    protected int limit;
+    protected int actingBlockLength;
+    protected int actingVersion;
+
+    public int sbeBlockLength()
+    {
+        return BLOCK_LENGTH;
+    }
+
+    public int sbeTemplateId()
+    {
+        return TEMPLATE_ID;
+    }
+
+    public int sbeSchemaId()
+    {
+        return SCHEMA_ID;
+    }
+
+    public int sbeSchemaVersion()
+    {
+        return SCHEMA_VERSION;
+    }
+
+    public String sbeSemanticType()
+    {
+        return "";
+    }
+
+    public DirectBuffer buffer()
+    {
+        return buffer;
+    }
+
+    public int offset()
+    {
+        return offset;
+    }
+
+    public HeartbeatDecoder wrap(
+        final DirectBuffer buffer, final int offset, final int actingBlockLength, final int actingVersion)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.actingBlockLength = actingBlockLength;
+        this.actingVersion = actingVersion;
+        limit(offset + actingBlockLength);
+
+        return this;
+    }
+
+    public int encodedLength()
+    {
+        return limit - offset;
+    }
+
+    public int limit()
+    {
+        return limit;
+    }
+
+    public void limit(final int limit)
+    {
+        this.limit = limit;
+    }
+
+    public static int replicaVersionId()
+    {
+        return 31;
+    }
+
+    public static int replicaVersionSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int replicaVersionEncodingOffset()
+    {
+        return 0;
+    }
+
+    public static int replicaVersionEncodingLength()
+    {
+        return 8;
+    }
+
+    public static String replicaVersionMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static long replicaVersionNullValue()
+    {
+        return 0xffffffffffffffffL;
+    }
+
+    public static long replicaVersionMinValue()
+    {
+        return 0x0L;
+    }
+
+    public static long replicaVersionMaxValue()
+    {
+        return 0xfffffffffffffffeL;
+    }
+
+    public long replicaVersion()
+    {
+        return buffer.getLong(offset + 0, java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    public static int epochId()
+    {
+        return 32;
+    }
+
+    public static int epochSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int epochEncodingOffset()
+    {
+        return 8;
+    }
+
+    public static int epochEncodingLength()
+    {
+        return 8;
+    }
+
+    public static String epochMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static long epochNullValue()
+    {
+        return 0xffffffffffffffffL;
+    }
+
+    public static long epochMinValue()
+    {
+        return 0x0L;
+    }
+
+    public static long epochMaxValue()
+    {
+        return 0xfffffffffffffffeL;
+    }
+
+    public long epoch()
+    {
+        return buffer.getLong(offset + 8, java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    public static int minEpochId()
+    {
+        return 33;
+    }
+
+    public static int minEpochSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int minEpochEncodingOffset()
+    {
+        return 16;
+    }
+
+    public static int minEpochEncodingLength()
+    {
+        return 8;
+    }
+
+    public static String minEpochMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static long minEpochNullValue()
+    {
+        return 0xffffffffffffffffL;
+    }
+
+    public static long minEpochMinValue()
+    {
+        return 0x0L;
+    }
+
+    public static long minEpochMaxValue()
+    {
+        return 0xfffffffffffffffeL;
+    }
+
+    public long minEpoch()
+    {
+        return buffer.getLong(offset + 16, java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    public static int destIdId()
+    {
+        return 34;
+    }
+
+    public static int destIdSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int destIdEncodingOffset()
+    {
+        return 24;
+    }
+
+    public static int destIdEncodingLength()
+    {
+        return 2;
+    }
+
+    public static String destIdMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static int destIdNullValue()
+    {
+        return 65535;
+    }
+
+    public static int destIdMinValue()
+    {
+        return 0;
+    }
+
+    public static int destIdMaxValue()
+    {
+        return 65534;
+    }
+
+    public int destId()
+    {
+        return (buffer.getShort(offset + 24, java.nio.ByteOrder.LITTLE_ENDIAN) & 0xFFFF);
+    }
+
+
+    public static int sessionIdId()
+    {
+        return 35;
+    }
+
+    public static int sessionIdSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int sessionIdEncodingOffset()
+    {
+        return 26;
+    }
+
+    public static int sessionIdEncodingLength()
+    {
+        return 4;
+    }
+
+    public static String sessionIdMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static int sessionIdNullValue()
+    {
+        return -2147483648;
+    }
+
+    public static int sessionIdMinValue()
+    {
+        return -2147483647;
+    }
+
+    public static int sessionIdMaxValue()
+    {
+        return 2147483647;
+    }
+
+    public int sessionId()
+    {
+        return buffer.getInt(offset + 26, java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    public static int srcPeerTypeId()
+    {
+        return 36;
+    }
+
+    public static int srcPeerTypeSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int srcPeerTypeEncodingOffset()
+    {
+        return 30;
+    }
+
+    public static int srcPeerTypeEncodingLength()
+    {
+        return 1;
+    }
+
+    public static String srcPeerTypeMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static byte srcPeerTypeNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte srcPeerTypeMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte srcPeerTypeMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public byte srcPeerType()
+    {
+        return buffer.getByte(offset + 30);
+    }
+
+
+    public static int srcPeerMsbId()
+    {
+        return 37;
+    }
+
+    public static int srcPeerMsbSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int srcPeerMsbEncodingOffset()
+    {
+        return 31;
+    }
+
+    public static int srcPeerMsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static String srcPeerMsbMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static long srcPeerMsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long srcPeerMsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long srcPeerMsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public long srcPeerMsb()
+    {
+        return buffer.getLong(offset + 31, java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    public static int srcPeerLsbId()
+    {
+        return 38;
+    }
+
+    public static int srcPeerLsbSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int srcPeerLsbEncodingOffset()
+    {
+        return 39;
+    }
+
+    public static int srcPeerLsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static String srcPeerLsbMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static long srcPeerLsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long srcPeerLsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long srcPeerLsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public long srcPeerLsb()
+    {
+        return buffer.getLong(offset + 39, java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    public static int dstPeerTypeId()
+    {
+        return 39;
+    }
+
+    public static int dstPeerTypeSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int dstPeerTypeEncodingOffset()
+    {
+        return 47;
+    }
+
+    public static int dstPeerTypeEncodingLength()
+    {
+        return 1;
+    }
+
+    public static String dstPeerTypeMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static byte dstPeerTypeNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte dstPeerTypeMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte dstPeerTypeMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public byte dstPeerType()
+    {
+        return buffer.getByte(offset + 47);
+    }
+
+
+    public static int dstPeerMsbId()
+    {
+        return 40;
+    }
+
+    public static int dstPeerMsbSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int dstPeerMsbEncodingOffset()
+    {
+        return 48;
+    }
+
+    public static int dstPeerMsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static String dstPeerMsbMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static long dstPeerMsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long dstPeerMsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long dstPeerMsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public long dstPeerMsb()
+    {
+        return buffer.getLong(offset + 48, java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    public static int dstPeerLsbId()
+    {
+        return 41;
+    }
+
+    public static int dstPeerLsbSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int dstPeerLsbEncodingOffset()
+    {
+        return 56;
+    }
+
+    public static int dstPeerLsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static String dstPeerLsbMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static long dstPeerLsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long dstPeerLsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long dstPeerLsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public long dstPeerLsb()
+    {
+        return buffer.getLong(offset + 56, java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    public static int checkpointingId()
+    {
+        return 42;
+    }
+
+    public static int checkpointingSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int checkpointingEncodingOffset()
+    {
+        return 64;
+    }
+
+    public static int checkpointingEncodingLength()
+    {
+        return 1;
+    }
+
+    public static String checkpointingMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static byte checkpointingNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte checkpointingMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte checkpointingMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public byte checkpointing()
+    {
+        return buffer.getByte(offset + 64);
+    }
+
+
+    public static int drainedId()
+    {
+        return 43;
+    }
+
+    public static int drainedSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int drainedEncodingOffset()
+    {
+        return 65;
+    }
+
+    public static int drainedEncodingLength()
+    {
+        return 1;
+    }
+
+    public static String drainedMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static byte drainedNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte drainedMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte drainedMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public byte drained()
+    {
+        return buffer.getByte(offset + 65);
+    }
+
+
+
+    public String toString()
+    {
+        return appendTo(new StringBuilder(100)).toString();
+    }
+
+    public StringBuilder appendTo(final StringBuilder builder)
+    {
+        final int originalLimit = limit();
+        limit(offset + actingBlockLength);
+        builder.append("[Heartbeat](sbeTemplateId=");
+        builder.append(TEMPLATE_ID);
+        builder.append("|sbeSchemaId=");
+        builder.append(SCHEMA_ID);
+        builder.append("|sbeSchemaVersion=");
+        if (parentMessage.actingVersion != SCHEMA_VERSION)
+        {
+            builder.append(parentMessage.actingVersion);
+            builder.append('/');
+        }
+        builder.append(SCHEMA_VERSION);
+        builder.append("|sbeBlockLength=");
+        if (actingBlockLength != BLOCK_LENGTH)
+        {
+            builder.append(actingBlockLength);
+            builder.append('/');
+        }
+        builder.append(BLOCK_LENGTH);
+        builder.append("):");
+        //Token{signal=BEGIN_FIELD, name='replicaVersion', description='null', id=31, version=0, encodedLength=0, offset=0, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='uint64', description='null', id=-1, version=0, encodedLength=8, offset=0, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=UINT64, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("replicaVersion=");
+        builder.append(replicaVersion());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='epoch', description='null', id=32, version=0, encodedLength=0, offset=8, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='uint64', description='null', id=-1, version=0, encodedLength=8, offset=8, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=UINT64, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("epoch=");
+        builder.append(epoch());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='minEpoch', description='null', id=33, version=0, encodedLength=0, offset=16, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='uint64', description='null', id=-1, version=0, encodedLength=8, offset=16, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=UINT64, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("minEpoch=");
+        builder.append(minEpoch());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='destId', description='null', id=34, version=0, encodedLength=0, offset=24, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='uint16', description='null', id=-1, version=0, encodedLength=2, offset=24, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=UINT16, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("destId=");
+        builder.append(destId());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='sessionId', description='null', id=35, version=0, encodedLength=0, offset=26, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int32', description='null', id=-1, version=0, encodedLength=4, offset=26, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT32, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("sessionId=");
+        builder.append(sessionId());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='srcPeerType', description='null', id=36, version=0, encodedLength=0, offset=30, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int8', description='null', id=-1, version=0, encodedLength=1, offset=30, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT8, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("srcPeerType=");
+        builder.append(srcPeerType());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='srcPeerMsb', description='null', id=37, version=0, encodedLength=0, offset=31, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int64', description='null', id=-1, version=0, encodedLength=8, offset=31, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT64, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("srcPeerMsb=");
+        builder.append(srcPeerMsb());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='srcPeerLsb', description='null', id=38, version=0, encodedLength=0, offset=39, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int64', description='null', id=-1, version=0, encodedLength=8, offset=39, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT64, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("srcPeerLsb=");
+        builder.append(srcPeerLsb());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='dstPeerType', description='null', id=39, version=0, encodedLength=0, offset=47, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int8', description='null', id=-1, version=0, encodedLength=1, offset=47, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT8, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("dstPeerType=");
+        builder.append(dstPeerType());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='dstPeerMsb', description='null', id=40, version=0, encodedLength=0, offset=48, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int64', description='null', id=-1, version=0, encodedLength=8, offset=48, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT64, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("dstPeerMsb=");
+        builder.append(dstPeerMsb());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='dstPeerLsb', description='null', id=41, version=0, encodedLength=0, offset=56, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int64', description='null', id=-1, version=0, encodedLength=8, offset=56, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT64, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("dstPeerLsb=");
+        builder.append(dstPeerLsb());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='checkpointing', description='null', id=42, version=0, encodedLength=0, offset=64, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int8', description='null', id=-1, version=0, encodedLength=1, offset=64, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT8, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("checkpointing=");
+        builder.append(checkpointing());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='drained', description='null', id=43, version=0, encodedLength=0, offset=65, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int8', description='null', id=-1, version=0, encodedLength=1, offset=65, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT8, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("drained=");
+        builder.append(drained());
+
+        limit(originalLimit);
+
+        return builder;
+    }
+}
@@ -0,0 +1,509 @@
+/* Generated SBE (Simple Binary Encoding) message codec */
+package onyx.serialization;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.DirectBuffer;
+
+@javax.annotation.Generated(value = {"onyx.serialization.HeartbeatEncoder"})
+@SuppressWarnings("all")
+public class HeartbeatEncoder
+{
+    public static final int BLOCK_LENGTH = 66;
+    public static final int TEMPLATE_ID = 30;
+    public static final int SCHEMA_ID = 1;
+    public static final int SCHEMA_VERSION = 0;
+
+    private final HeartbeatEncoder parentMessage = this;
+    private MutableDirectBuffer buffer;
+    protected int offset;
+    protected int limit;
+
+    public int sbeBlockLength()
+    {
+        return BLOCK_LENGTH;
+    }
+
+    public int sbeTemplateId()
+    {
+        return TEMPLATE_ID;
+    }
+
+    public int sbeSchemaId()
+    {
+        return SCHEMA_ID;
+    }
+
+    public int sbeSchemaVersion()
+    {
+        return SCHEMA_VERSION;
+    }
+
+    public String sbeSemanticType()
+    {
+        return "";
+    }
+
+    public MutableDirectBuffer buffer()
+    {
+        return buffer;
+    }
+
+    public int offset()
+    {
+        return offset;
+    }
+
+    public HeartbeatEncoder wrap(final MutableDirectBuffer buffer, final int offset)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        limit(offset + BLOCK_LENGTH);
+
+        return this;
+    }
+
+    public int encodedLength()
+    {
+        return limit - offset;
+    }
+
+    public int limit()
+    {
+        return limit;
+    }
+
+    public void limit(final int limit)
+    {
+        this.limit = limit;
+    }
+
+    public static int replicaVersionEncodingOffset()
+    {
+        return 0;
+    }
+
+    public static int replicaVersionEncodingLength()
+    {
+        return 8;
+    }
+
+    public static long replicaVersionNullValue()
+    {
+        return 0xffffffffffffffffL;
+    }
+
+    public static long replicaVersionMinValue()
+    {
+        return 0x0L;
+    }
+
+    public static long replicaVersionMaxValue()
+    {
+        return 0xfffffffffffffffeL;
+    }
+
+    public HeartbeatEncoder replicaVersion(final long value)
+    {
+        buffer.putLong(offset + 0, value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int epochEncodingOffset()
+    {
+        return 8;
+    }
+
+    public static int epochEncodingLength()
+    {
+        return 8;
+    }
+
+    public static long epochNullValue()
+    {
+        return 0xffffffffffffffffL;
+    }
+
+    public static long epochMinValue()
+    {
+        return 0x0L;
+    }
+
+    public static long epochMaxValue()
+    {
+        return 0xfffffffffffffffeL;
+    }
+
+    public HeartbeatEncoder epoch(final long value)
+    {
+        buffer.putLong(offset + 8, value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int minEpochEncodingOffset()
+    {
+        return 16;
+    }
+
+    public static int minEpochEncodingLength()
+    {
+        return 8;
+    }
+
+    public static long minEpochNullValue()
+    {
+        return 0xffffffffffffffffL;
+    }
+
+    public static long minEpochMinValue()
+    {
+        return 0x0L;
+    }
+
+    public static long minEpochMaxValue()
+    {
+        return 0xfffffffffffffffeL;
+    }
+
+    public HeartbeatEncoder minEpoch(final long value)
+    {
+        buffer.putLong(offset + 16, value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int destIdEncodingOffset()
+    {
+        return 24;
+    }
+
+    public static int destIdEncodingLength()
+    {
+        return 2;
+    }
+
+    public static int destIdNullValue()
+    {
+        return 65535;
+    }
+
+    public static int destIdMinValue()
+    {
+        return 0;
+    }
+
+    public static int destIdMaxValue()
+    {
+        return 65534;
+    }
+
+    public HeartbeatEncoder destId(final int value)
+    {
+        buffer.putShort(offset + 24, (short)value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int sessionIdEncodingOffset()
+    {
+        return 26;
+    }
+
+    public static int sessionIdEncodingLength()
+    {
+        return 4;
+    }
+
+    public static int sessionIdNullValue()
+    {
+        return -2147483648;
+    }
+
+    public static int sessionIdMinValue()
+    {
+        return -2147483647;
+    }
+
+    public static int sessionIdMaxValue()
+    {
+        return 2147483647;
+    }
+
+    public HeartbeatEncoder sessionId(final int value)
+    {
+        buffer.putInt(offset + 26, value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int srcPeerTypeEncodingOffset()
+    {
+        return 30;
+    }
+
+    public static int srcPeerTypeEncodingLength()
+    {
+        return 1;
+    }
+
+    public static byte srcPeerTypeNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte srcPeerTypeMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte srcPeerTypeMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public HeartbeatEncoder srcPeerType(final byte value)
+    {
+        buffer.putByte(offset + 30, value);
+        return this;
+    }
+
+
+    public static int srcPeerMsbEncodingOffset()
+    {
+        return 31;
+    }
+
+    public static int srcPeerMsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static long srcPeerMsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long srcPeerMsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long srcPeerMsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public HeartbeatEncoder srcPeerMsb(final long value)
+    {
+        buffer.putLong(offset + 31, value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int srcPeerLsbEncodingOffset()
+    {
+        return 39;
+    }
+
+    public static int srcPeerLsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static long srcPeerLsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long srcPeerLsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long srcPeerLsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public HeartbeatEncoder srcPeerLsb(final long value)
+    {
+        buffer.putLong(offset + 39, value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int dstPeerTypeEncodingOffset()
+    {
+        return 47;
+    }
+
+    public static int dstPeerTypeEncodingLength()
+    {
+        return 1;
+    }
+
+    public static byte dstPeerTypeNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte dstPeerTypeMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte dstPeerTypeMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public HeartbeatEncoder dstPeerType(final byte value)
+    {
+        buffer.putByte(offset + 47, value);
+        return this;
+    }
+
+
+    public static int dstPeerMsbEncodingOffset()
+    {
+        return 48;
+    }
+
+    public static int dstPeerMsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static long dstPeerMsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long dstPeerMsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long dstPeerMsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public HeartbeatEncoder dstPeerMsb(final long value)
+    {
+        buffer.putLong(offset + 48, value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int dstPeerLsbEncodingOffset()
+    {
+        return 56;
+    }
+
+    public static int dstPeerLsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static long dstPeerLsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long dstPeerLsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long dstPeerLsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public HeartbeatEncoder dstPeerLsb(final long value)
+    {
+        buffer.putLong(offset + 56, value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int checkpointingEncodingOffset()
+    {
+        return 64;
+    }
+
+    public static int checkpointingEncodingLength()
+    {
+        return 1;
+    }
+
+    public static byte checkpointingNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte checkpointingMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte checkpointingMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public HeartbeatEncoder checkpointing(final byte value)
+    {
+        buffer.putByte(offset + 64, value);
+        return this;
+    }
+
+
+    public static int drainedEncodingOffset()
+    {
+        return 65;
+    }
+
+    public static int drainedEncodingLength()
+    {
+        return 1;
+    }
+
+    public static byte drainedNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte drainedMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte drainedMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public HeartbeatEncoder drained(final byte value)
+    {
+        buffer.putByte(offset + 65, value);
+        return this;
+    }
+
+
+
+    public String toString()
+    {
+        return appendTo(new StringBuilder(100)).toString();
+    }
+
+    public StringBuilder appendTo(final StringBuilder builder)
+    {
+        HeartbeatDecoder writer = new HeartbeatDecoder();
+        writer.wrap(buffer, offset, BLOCK_LENGTH, SCHEMA_VERSION);
+
+        return writer.appendTo(builder);
+    }
+}
@@ -0,0 +1,234 @@
+/* Generated SBE (Simple Binary Encoding) message codec */
+package onyx.serialization;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.DirectBuffer;
+
+@javax.annotation.Generated(value = {"onyx.serialization.ReadyDecoder"})
+@SuppressWarnings("all")
+public class ReadyDecoder
+{
+    public static final int BLOCK_LENGTH = 10;
+    public static final int TEMPLATE_ID = 45;
+    public static final int SCHEMA_ID = 1;
+    public static final int SCHEMA_VERSION = 0;
+
+    private final ReadyDecoder parentMessage = this;
+    private DirectBuffer buffer;
+    protected int offset;
+    protected int limit;
+    protected int actingBlockLength;
+    protected int actingVersion;
+
+    public int sbeBlockLength()
+    {
+        return BLOCK_LENGTH;
+    }
+
+    public int sbeTemplateId()
+    {
+        return TEMPLATE_ID;
+    }
+
+    public int sbeSchemaId()
+    {
+        return SCHEMA_ID;
+    }
+
+    public int sbeSchemaVersion()
+    {
+        return SCHEMA_VERSION;
+    }
+
+    public String sbeSemanticType()
+    {
+        return "";
+    }
+
+    public DirectBuffer buffer()
+    {
+        return buffer;
+    }
+
+    public int offset()
+    {
+        return offset;
+    }
+
+    public ReadyDecoder wrap(
+        final DirectBuffer buffer, final int offset, final int actingBlockLength, final int actingVersion)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.actingBlockLength = actingBlockLength;
+        this.actingVersion = actingVersion;
+        limit(offset + actingBlockLength);
+
+        return this;
+    }
+
+    public int encodedLength()
+    {
+        return limit - offset;
+    }
+
+    public int limit()
+    {
+        return limit;
+    }
+
+    public void limit(final int limit)
+    {
+        this.limit = limit;
+    }
+
+    public static int replicaVersionId()
+    {
+        return 46;
+    }
+
+    public static int replicaVersionSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int replicaVersionEncodingOffset()
+    {
+        return 0;
+    }
+
+    public static int replicaVersionEncodingLength()
+    {
+        return 8;
+    }
+
+    public static String replicaVersionMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static long replicaVersionNullValue()
+    {
+        return 0xffffffffffffffffL;
+    }
+
+    public static long replicaVersionMinValue()
+    {
+        return 0x0L;
+    }
+
+    public static long replicaVersionMaxValue()
+    {
+        return 0xfffffffffffffffeL;
+    }
+
+    public long replicaVersion()
+    {
+        return buffer.getLong(offset + 0, java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    public static int destIdId()
+    {
+        return 47;
+    }
+
+    public static int destIdSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int destIdEncodingOffset()
+    {
+        return 8;
+    }
+
+    public static int destIdEncodingLength()
+    {
+        return 2;
+    }
+
+    public static String destIdMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static int destIdNullValue()
+    {
+        return 65535;
+    }
+
+    public static int destIdMinValue()
+    {
+        return 0;
+    }
+
+    public static int destIdMaxValue()
+    {
+        return 65534;
+    }
+
+    public int destId()
+    {
+        return (buffer.getShort(offset + 8, java.nio.ByteOrder.LITTLE_ENDIAN) & 0xFFFF);
+    }
+
+
+
+    public String toString()
+    {
+        return appendTo(new StringBuilder(100)).toString();
+    }
+
+    public StringBuilder appendTo(final StringBuilder builder)
+    {
+        final int originalLimit = limit();
+        limit(offset + actingBlockLength);
+        builder.append("[Ready](sbeTemplateId=");
+        builder.append(TEMPLATE_ID);
+        builder.append("|sbeSchemaId=");
+        builder.append(SCHEMA_ID);
+        builder.append("|sbeSchemaVersion=");
+        if (parentMessage.actingVersion != SCHEMA_VERSION)
+        {
+            builder.append(parentMessage.actingVersion);
+            builder.append('/');
+        }
+        builder.append(SCHEMA_VERSION);
+        builder.append("|sbeBlockLength=");
+        if (actingBlockLength != BLOCK_LENGTH)
+        {
+            builder.append(actingBlockLength);
+            builder.append('/');
+        }
+        builder.append(BLOCK_LENGTH);
+        builder.append("):");
+        //Token{signal=BEGIN_FIELD, name='replicaVersion', description='null', id=46, version=0, encodedLength=0, offset=0, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='uint64', description='null', id=-1, version=0, encodedLength=8, offset=0, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=UINT64, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("replicaVersion=");
+        builder.append(replicaVersion());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='destId', description='null', id=47, version=0, encodedLength=0, offset=8, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='uint16', description='null', id=-1, version=0, encodedLength=2, offset=8, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=UINT16, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("destId=");
+        builder.append(destId());
+
+        limit(originalLimit);
+
+        return builder;
+    }
+}
@@ -0,0 +1,157 @@
+/* Generated SBE (Simple Binary Encoding) message codec */
+package onyx.serialization;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.DirectBuffer;
+
+@javax.annotation.Generated(value = {"onyx.serialization.ReadyEncoder"})
+@SuppressWarnings("all")
+public class ReadyEncoder
+{
+    public static final int BLOCK_LENGTH = 10;
+    public static final int TEMPLATE_ID = 45;
+    public static final int SCHEMA_ID = 1;
+    public static final int SCHEMA_VERSION = 0;
+
+    private final ReadyEncoder parentMessage = this;
+    private MutableDirectBuffer buffer;
+    protected int offset;
+    protected int limit;
+
+    public int sbeBlockLength()
+    {
+        return BLOCK_LENGTH;
+    }
+
+    public int sbeTemplateId()
+    {
+        return TEMPLATE_ID;
+    }
+
+    public int sbeSchemaId()
+    {
+        return SCHEMA_ID;
+    }
+
+    public int sbeSchemaVersion()
+    {
+        return SCHEMA_VERSION;
+    }
+
+    public String sbeSemanticType()
+    {
+        return "";
+    }
+
+    public MutableDirectBuffer buffer()
+    {
+        return buffer;
+    }
+
+    public int offset()
+    {
+        return offset;
+    }
+
+    public ReadyEncoder wrap(final MutableDirectBuffer buffer, final int offset)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        limit(offset + BLOCK_LENGTH);
+
+        return this;
+    }
+
+    public int encodedLength()
+    {
+        return limit - offset;
+    }
+
+    public int limit()
+    {
+        return limit;
+    }
+
+    public void limit(final int limit)
+    {
+        this.limit = limit;
+    }
+
+    public static int replicaVersionEncodingOffset()
+    {
+        return 0;
+    }
+
+    public static int replicaVersionEncodingLength()
+    {
+        return 8;
+    }
+
+    public static long replicaVersionNullValue()
+    {
+        return 0xffffffffffffffffL;
+    }
+
+    public static long replicaVersionMinValue()
+    {
+        return 0x0L;
+    }
+
+    public static long replicaVersionMaxValue()
+    {
+        return 0xfffffffffffffffeL;
+    }
+
+    public ReadyEncoder replicaVersion(final long value)
+    {
+        buffer.putLong(offset + 0, value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int destIdEncodingOffset()
+    {
+        return 8;
+    }
+
+    public static int destIdEncodingLength()
+    {
+        return 2;
+    }
+
+    public static int destIdNullValue()
+    {
+        return 65535;
+    }
+
+    public static int destIdMinValue()
+    {
+        return 0;
+    }
+
+    public static int destIdMaxValue()
+    {
+        return 65534;
+    }
+
+    public ReadyEncoder destId(final int value)
+    {
+        buffer.putShort(offset + 8, (short)value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+
+    public String toString()
+    {
+        return appendTo(new StringBuilder(100)).toString();
+    }
+
+    public StringBuilder appendTo(final StringBuilder builder)
+    {
+        ReadyDecoder writer = new ReadyDecoder();
+        writer.wrap(buffer, offset, BLOCK_LENGTH, SCHEMA_VERSION);
+
+        return writer.appendTo(builder);
+    }
+}
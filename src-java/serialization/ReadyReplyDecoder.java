@@ -0,0 +1,640 @@
+/* Generated SBE (Simple Binary Encoding) message codec */
+package onyx.serialization;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.DirectBuffer;
+
+@javax.annotation.Generated(value = {"onyx.serialization.ReadyReplyDecoder"})
+@SuppressWarnings("all")
+public class ReadyReplyDecoder
+{
+    public static final int BLOCK_LENGTH = 48;
+    public static final int TEMPLATE_ID = 50;
+    public static final int SCHEMA_ID = 1;
+    public static final int SCHEMA_VERSION = 0;
+
+    private final ReadyReplyDecoder parentMessage = this;
+    private DirectBuffer buffer;
+    protected int offset;
+    protected int limit;
+    protected int actingBlockLength;
+    protected int actingVersion;
+
+    public int sbeBlockLength()
+    {
+        return BLOCK_LENGTH;
+    }
+
+    public int sbeTemplateId()
+    {
+        return TEMPLATE_ID;
+    }
+
+    public int sbeSchemaId()
+    {
+        return SCHEMA_ID;
+    }
+
+    public int sbeSchemaVersion()
+    {
+        return SCHEMA_VERSION;
+    }
+
+    public String sbeSemanticType()
+    {
+        return "";
+    }
+
+    public DirectBuffer buffer()
+    {
+        return buffer;
+    }
+
+    public int offset()
+    {
+        return offset;
+    }
+
+    public ReadyReplyDecoder wrap(
+        final DirectBuffer buffer, final int offset, final int actingBlockLength, final int actingVersion)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.actingBlockLength = actingBlockLength;
+        this.actingVersion = actingVersion;
+        limit(offset + actingBlockLength);
+
+        return this;
+    }
+
+    public int encodedLength()
+    {
+        return limit - offset;
+    }
+
+    public int limit()
+    {
+        return limit;
+    }
+
+    public void limit(final int limit)
+    {
+        this.limit = limit;
+    }
+
+    public static int replicaVersionId()
+    {
+        return 51;
+    }
+
+    public static int replicaVersionSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int replicaVersionEncodingOffset()
+    {
+        return 0;
+    }
+
+    public static int replicaVersionEncodingLength()
+    {
+        return 8;
+    }
+
+    public static String replicaVersionMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static long replicaVersionNullValue()
+    {
+        return 0xffffffffffffffffL;
+    }
+
+    public static long replicaVersionMinValue()
+    {
+        return 0x0L;
+    }
+
+    public static long replicaVersionMaxValue()
+    {
+        return 0xfffffffffffffffeL;
+    }
+
+    public long replicaVersion()
+    {
+        return buffer.getLong(offset + 0, java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    public static int destIdId()
+    {
+        return 52;
+    }
+
+    public static int destIdSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int destIdEncodingOffset()
+    {
+        return 8;
+    }
+
+    public static int destIdEncodingLength()
+    {
+        return 2;
+    }
+
+    public static String destIdMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static int destIdNullValue()
+    {
+        return 65535;
+    }
+
+    public static int destIdMinValue()
+    {
+        return 0;
+    }
+
+    public static int destIdMaxValue()
+    {
+        return 65534;
+    }
+
+    public int destId()
+    {
+        return (buffer.getShort(offset + 8, java.nio.ByteOrder.LITTLE_ENDIAN) & 0xFFFF);
+    }
+
+
+    public static int sessionIdId()
+    {
+        return 53;
+    }
+
+    public static int sessionIdSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int sessionIdEncodingOffset()
+    {
+        return 10;
+    }
+
+    public static int sessionIdEncodingLength()
+    {
+        return 4;
+    }
+
+    public static String sessionIdMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static int sessionIdNullValue()
+    {
+        return -2147483648;
+    }
+
+    public static int sessionIdMinValue()
+    {
+        return -2147483647;
+    }
+
+    public static int sessionIdMaxValue()
+    {
+        return 2147483647;
+    }
+
+    public int sessionId()
+    {
+        return buffer.getInt(offset + 10, java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    public static int srcPeerTypeId()
+    {
+        return 54;
+    }
+
+    public static int srcPeerTypeSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int srcPeerTypeEncodingOffset()
+    {
+        return 14;
+    }
+
+    public static int srcPeerTypeEncodingLength()
+    {
+        return 1;
+    }
+
+    public static String srcPeerTypeMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static byte srcPeerTypeNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte srcPeerTypeMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte srcPeerTypeMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public byte srcPeerType()
+    {
+        return buffer.getByte(offset + 14);
+    }
+
+
+    public static int srcPeerMsbId()
+    {
+        return 55;
+    }
+
+    public static int srcPeerMsbSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int srcPeerMsbEncodingOffset()
+    {
+        return 15;
+    }
+
+    public static int srcPeerMsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static String srcPeerMsbMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static long srcPeerMsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long srcPeerMsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long srcPeerMsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public long srcPeerMsb()
+    {
+        return buffer.getLong(offset + 15, java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    public static int srcPeerLsbId()
+    {
+        return 56;
+    }
+
+    public static int srcPeerLsbSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int srcPeerLsbEncodingOffset()
+    {
+        return 23;
+    }
+
+    public static int srcPeerLsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static String srcPeerLsbMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static long srcPeerLsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long srcPeerLsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long srcPeerLsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public long srcPeerLsb()
+    {
+        return buffer.getLong(offset + 23, java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    public static int dstPeerTypeId()
+    {
+        return 57;
+    }
+
+    public static int dstPeerTypeSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int dstPeerTypeEncodingOffset()
+    {
+        return 31;
+    }
+
+    public static int dstPeerTypeEncodingLength()
+    {
+        return 1;
+    }
+
+    public static String dstPeerTypeMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static byte dstPeerTypeNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte dstPeerTypeMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte dstPeerTypeMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public byte dstPeerType()
+    {
+        return buffer.getByte(offset + 31);
+    }
+
+
+    public static int dstPeerMsbId()
+    {
+        return 58;
+    }
+
+    public static int dstPeerMsbSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int dstPeerMsbEncodingOffset()
+    {
+        return 32;
+    }
+
+    public static int dstPeerMsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static String dstPeerMsbMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static long dstPeerMsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long dstPeerMsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long dstPeerMsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public long dstPeerMsb()
+    {
+        return buffer.getLong(offset + 32, java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    public static int dstPeerLsbId()
+    {
+        return 59;
+    }
+
+    public static int dstPeerLsbSinceVersion()
+    {
+        return 0;
+    }
+
+    public static int dstPeerLsbEncodingOffset()
+    {
+        return 40;
+    }
+
+    public static int dstPeerLsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static String dstPeerLsbMetaAttribute(final MetaAttribute metaAttribute)
+    {
+        switch (metaAttribute)
+        {
+            case EPOCH: return "unix";
+            case TIME_UNIT: return "nanosecond";
+            case SEMANTIC_TYPE: return "";
+        }
+
+        return "";
+    }
+
+    public static long dstPeerLsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long dstPeerLsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long dstPeerLsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public long dstPeerLsb()
+    {
+        return buffer.getLong(offset + 40, java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+
+    public String toString()
+    {
+        return appendTo(new StringBuilder(100)).toString();
+    }
+
+    public StringBuilder appendTo(final StringBuilder builder)
+    {
+        final int originalLimit = limit();
+        limit(offset + actingBlockLength);
+        builder.append("[ReadyReply](sbeTemplateId=");
+        builder.append(TEMPLATE_ID);
+        builder.append("|sbeSchemaId=");
+        builder.append(SCHEMA_ID);
+        builder.append("|sbeSchemaVersion=");
+        if (parentMessage.actingVersion != SCHEMA_VERSION)
+        {
+            builder.append(parentMessage.actingVersion);
+            builder.append('/');
+        }
+        builder.append(SCHEMA_VERSION);
+        builder.append("|sbeBlockLength=");
+        if (actingBlockLength != BLOCK_LENGTH)
+        {
+            builder.append(actingBlockLength);
+            builder.append('/');
+        }
+        builder.append(BLOCK_LENGTH);
+        builder.append("):");
+        //Token{signal=BEGIN_FIELD, name='replicaVersion', description='null', id=51, version=0, encodedLength=0, offset=0, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='uint64', description='null', id=-1, version=0, encodedLength=8, offset=0, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=UINT64, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("replicaVersion=");
+        builder.append(replicaVersion());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='destId', description='null', id=52, version=0, encodedLength=0, offset=8, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='uint16', description='null', id=-1, version=0, encodedLength=2, offset=8, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=UINT16, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("destId=");
+        builder.append(destId());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='sessionId', description='null', id=53, version=0, encodedLength=0, offset=10, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int32', description='null', id=-1, version=0, encodedLength=4, offset=10, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT32, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("sessionId=");
+        builder.append(sessionId());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='srcPeerType', description='null', id=54, version=0, encodedLength=0, offset=14, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int8', description='null', id=-1, version=0, encodedLength=1, offset=14, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT8, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("srcPeerType=");
+        builder.append(srcPeerType());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='srcPeerMsb', description='null', id=55, version=0, encodedLength=0, offset=15, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int64', description='null', id=-1, version=0, encodedLength=8, offset=15, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT64, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("srcPeerMsb=");
+        builder.append(srcPeerMsb());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='srcPeerLsb', description='null', id=56, version=0, encodedLength=0, offset=23, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int64', description='null', id=-1, version=0, encodedLength=8, offset=23, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT64, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("srcPeerLsb=");
+        builder.append(srcPeerLsb());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='dstPeerType', description='null', id=57, version=0, encodedLength=0, offset=31, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int8', description='null', id=-1, version=0, encodedLength=1, offset=31, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT8, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("dstPeerType=");
+        builder.append(dstPeerType());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='dstPeerMsb', description='null', id=58, version=0, encodedLength=0, offset=32, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int64', description='null', id=-1, version=0, encodedLength=8, offset=32, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT64, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("dstPeerMsb=");
+        builder.append(dstPeerMsb());
+        builder.append('|');
+        //Token{signal=BEGIN_FIELD, name='dstPeerLsb', description='null', id=59, version=0, encodedLength=0, offset=40, componentTokenCount=3, encoding=Encoding{presence=REQUIRED, primitiveType=null, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        //Token{signal=ENCODING, name='int64', description='null', id=-1, version=0, encodedLength=8, offset=40, componentTokenCount=1, encoding=Encoding{presence=REQUIRED, primitiveType=INT64, byteOrder=LITTLE_ENDIAN, minValue=null, maxValue=null, nullValue=null, constValue=null, characterEncoding='null', epoch='unix', timeUnit=nanosecond, semanticType='null'}}
+        builder.append("dstPeerLsb=");
+        builder.append(dstPeerLsb());
+
+        limit(originalLimit);
+
+        return builder;
+    }
+}
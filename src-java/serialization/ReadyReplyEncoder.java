@@ -0,0 +1,381 @@
+/* Generated SBE (Simple Binary Encoding) message codec */
+package onyx.serialization;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.DirectBuffer;
+
+@javax.annotation.Generated(value = {"onyx.serialization.ReadyReplyEncoder"})
+@SuppressWarnings("all")
+public class ReadyReplyEncoder
+{
+    public static final int BLOCK_LENGTH = 48;
+    public static final int TEMPLATE_ID = 50;
+    public static final int SCHEMA_ID = 1;
+    public static final int SCHEMA_VERSION = 0;
+
+    private final ReadyReplyEncoder parentMessage = this;
+    private MutableDirectBuffer buffer;
+    protected int offset;
+    protected int limit;
+
+    public int sbeBlockLength()
+    {
+        return BLOCK_LENGTH;
+    }
+
+    public int sbeTemplateId()
+    {
+        return TEMPLATE_ID;
+    }
+
+    public int sbeSchemaId()
+    {
+        return SCHEMA_ID;
+    }
+
+    public int sbeSchemaVersion()
+    {
+        return SCHEMA_VERSION;
+    }
+
+    public String sbeSemanticType()
+    {
+        return "";
+    }
+
+    public MutableDirectBuffer buffer()
+    {
+        return buffer;
+    }
+
+    public int offset()
+    {
+        return offset;
+    }
+
+    public ReadyReplyEncoder wrap(final MutableDirectBuffer buffer, final int offset)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        limit(offset + BLOCK_LENGTH);
+
+        return this;
+    }
+
+    public int encodedLength()
+    {
+        return limit - offset;
+    }
+
+    public int limit()
+    {
+        return limit;
+    }
+
+    public void limit(final int limit)
+    {
+        this.limit = limit;
+    }
+
+    public static int replicaVersionEncodingOffset()
+    {
+        return 0;
+    }
+
+    public static int replicaVersionEncodingLength()
+    {
+        return 8;
+    }
+
+    public static long replicaVersionNullValue()
+    {
+        return 0xffffffffffffffffL;
+    }
+
+    public static long replicaVersionMinValue()
+    {
+        return 0x0L;
+    }
+
+    public static long replicaVersionMaxValue()
+    {
+        return 0xfffffffffffffffeL;
+    }
+
+    public ReadyReplyEncoder replicaVersion(final long value)
+    {
+        buffer.putLong(offset + 0, value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int destIdEncodingOffset()
+    {
+        return 8;
+    }
+
+    public static int destIdEncodingLength()
+    {
+        return 2;
+    }
+
+    public static int destIdNullValue()
+    {
+        return 65535;
+    }
+
+    public static int destIdMinValue()
+    {
+        return 0;
+    }
+
+    public static int destIdMaxValue()
+    {
+        return 65534;
+    }
+
+    public ReadyReplyEncoder destId(final int value)
+    {
+        buffer.putShort(offset + 8, (short)value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int sessionIdEncodingOffset()
+    {
+        return 10;
+    }
+
+    public static int sessionIdEncodingLength()
+    {
+        return 4;
+    }
+
+    public static int sessionIdNullValue()
+    {
+        return -2147483648;
+    }
+
+    public static int sessionIdMinValue()
+    {
+        return -2147483647;
+    }
+
+    public static int sessionIdMaxValue()
+    {
+        return 2147483647;
+    }
+
+    public ReadyReplyEncoder sessionId(final int value)
+    {
+        buffer.putInt(offset + 10, value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int srcPeerTypeEncodingOffset()
+    {
+        return 14;
+    }
+
+    public static int srcPeerTypeEncodingLength()
+    {
+        return 1;
+    }
+
+    public static byte srcPeerTypeNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte srcPeerTypeMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte srcPeerTypeMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public ReadyReplyEncoder srcPeerType(final byte value)
+    {
+        buffer.putByte(offset + 14, value);
+        return this;
+    }
+
+
+    public static int srcPeerMsbEncodingOffset()
+    {
+        return 15;
+    }
+
+    public static int srcPeerMsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static long srcPeerMsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long srcPeerMsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long srcPeerMsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public ReadyReplyEncoder srcPeerMsb(final long value)
+    {
+        buffer.putLong(offset + 15, value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int srcPeerLsbEncodingOffset()
+    {
+        return 23;
+    }
+
+    public static int srcPeerLsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static long srcPeerLsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long srcPeerLsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long srcPeerLsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public ReadyReplyEncoder srcPeerLsb(final long value)
+    {
+        buffer.putLong(offset + 23, value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int dstPeerTypeEncodingOffset()
+    {
+        return 31;
+    }
+
+    public static int dstPeerTypeEncodingLength()
+    {
+        return 1;
+    }
+
+    public static byte dstPeerTypeNullValue()
+    {
+        return (byte)-128;
+    }
+
+    public static byte dstPeerTypeMinValue()
+    {
+        return (byte)-127;
+    }
+
+    public static byte dstPeerTypeMaxValue()
+    {
+        return (byte)127;
+    }
+
+    public ReadyReplyEncoder dstPeerType(final byte value)
+    {
+        buffer.putByte(offset + 31, value);
+        return this;
+    }
+
+
+    public static int dstPeerMsbEncodingOffset()
+    {
+        return 32;
+    }
+
+    public static int dstPeerMsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static long dstPeerMsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long dstPeerMsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long dstPeerMsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public ReadyReplyEncoder dstPeerMsb(final long value)
+    {
+        buffer.putLong(offset + 32, value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+    public static int dstPeerLsbEncodingOffset()
+    {
+        return 40;
+    }
+
+    public static int dstPeerLsbEncodingLength()
+    {
+        return 8;
+    }
+
+    public static long dstPeerLsbNullValue()
+    {
+        return 0x8000000000000000L;
+    }
+
+    public static long dstPeerLsbMinValue()
+    {
+        return 0x8000000000000001L;
+    }
+
+    public static long dstPeerLsbMaxValue()
+    {
+        return 0x7fffffffffffffffL;
+    }
+
+    public ReadyReplyEncoder dstPeerLsb(final long value)
+    {
+        buffer.putLong(offset + 40, value, java.nio.ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+
+
+
+    public String toString()
+    {
+        return appendTo(new StringBuilder(100)).toString();
+    }
+
+    public StringBuilder appendTo(final StringBuilder builder)
+    {
+        ReadyReplyDecoder writer = new ReadyReplyDecoder();
+        writer.wrap(buffer, offset, BLOCK_LENGTH, SCHEMA_VERSION);
+
+        return writer.appendTo(builder);
+    }
+}
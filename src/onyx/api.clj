@@ -225,7 +225,8 @@
        (let [job-hash (hash-job job)
              job (-> job 
                      (update-in [:metadata :job-id] #(or % (random-uuid)))
-                     (assoc-in [:metadata :job-hash] job-hash))
+                     (assoc-in [:metadata :job-hash] job-hash)
+                     (planning/fuse-tasks))
              id (get-in job [:metadata :job-id])
              tasks (planning/discover-tasks (:catalog job) (:workflow job))
              entry (create-submit-job-entry id peer-client-config job tasks)
@@ -1,5 +1,6 @@
 (ns onyx.compression.nippy
-  (:require [taoensso.nippy :as nippy]))
+  (:require [taoensso.nippy :as nippy])
+  (:import [java.io DataInput DataOutput]))
 
 (def messaging-compress-opts 
   {:v1-compatibility? false 
@@ -11,11 +12,21 @@
 (def messaging-compress 
   nippy/fast-freeze)
 
+(defn messaging-compress-output
+  "Freezes a value with the same encoding as messaging-compress, directly to a DataOutput."
+  [^DataOutput data-output x]
+  (nippy/with-cache (nippy/freeze-to-out! data-output x)))
+
 (def messaging-decompress-opts 
   messaging-compress-opts)
 
 (def messaging-decompress nippy/fast-thaw)
 
+(defn messaging-decompress-input
+  "Thaws a value frozen with messaging-compress directly from a DataInput."
+  [^DataInput data-input]
+  (nippy/with-cache (nippy/thaw-from-in! data-input)))
+
 (def zookeeper-compress-opts {})
 
 (defn zookeeper-compress [x]
@@ -0,0 +1,114 @@
+(ns ^:no-doc onyx.messaging.aeron.client-pool
+  "Shares a single Aeron client, and thus a single client conductor, between
+   all of the publications and subscriptions created in a peer group."
+  (:require [taoensso.timbre :refer [debug info warn] :as timbre])
+  (:import [io.aeron Aeron Aeron$Context AvailableImageHandler UnavailableImageHandler Image]
+           [org.agrona ErrorHandler]
+           [java.util Set]
+           [java.util.concurrent ConcurrentHashMap]
+           [java.util.concurrent.atomic AtomicBoolean]))
+
+(defprotocol PClientPool
+  (lease! [this error-fn])
+  (release! [this error-fn])
+  (pool-info [this])
+  (stop [this]))
+
+(defn available-image []
+  (reify AvailableImageHandler
+    (onAvailableImage [this image]
+      (debug "Available network image" (.position image) (.sessionId image) (.sourceIdentity image)))))
+
+(defn unavailable-image []
+  (reify UnavailableImageHandler
+    (onUnavailableImage [this image]
+      (debug "Unavailable network image" (.position image) (.sessionId image) (.sourceIdentity image)))))
+
+(def fatal-client-errors
+  ;; matched by name, as the exception classes vary between Aeron versions
+  #{"io.aeron.exceptions.DriverTimeoutException"
+    "io.aeron.exceptions.ConductorServiceTimeoutException"
+    "io.aeron.exceptions.ClientTimeoutException"})
+
+(defn fatal-client-error? [x]
+  (contains? fatal-client-errors (.getName (class x))))
+
+(defn client-error-handler
+  "Errors on the shared client can't be attributed to a single publication or
+   subscription. Only errors that leave the client unusable are passed on to
+   the leaseholders, and the client is replaced on the next lease."
+  [^Set error-fns ^AtomicBoolean failed]
+  (reify ErrorHandler
+    (onError [this x]
+      (warn x "Aeron client error")
+      (when (fatal-client-error? x)
+        (.set failed true)
+        (run! (fn [f] (f x)) (vec error-fns))))))
+
+(defn connect [peer-config ^Set error-fns ^AtomicBoolean failed]
+  (let [media-driver-dir (:onyx.messaging.aeron/media-driver-dir peer-config)
+        ctx (cond-> (Aeron$Context.)
+              true (.errorHandler (client-error-handler error-fns failed))
+              true (.availableImageHandler (available-image))
+              true (.unavailableImageHandler (unavailable-image))
+              media-driver-dir (.aeronDirectoryName ^String media-driver-dir))]
+    (Aeron/connect ctx)))
+
+(defn close-client! [^Aeron conn]
+  (try
+    (.close conn)
+    (catch Throwable t
+      (warn t "Error closing shared Aeron client"))))
+
+;; error-fns holds the error fns of the leases on the current client. The client
+;; stays open while it has no leases, so that reallocating publications and
+;; subscriptions does not reconnect, and is only closed when the pool stops.
+;; A client that failed is replaced on the next lease, and its leases are
+;; forgotten. Their holders were notified, and lease the new client when they
+;; restart, as holders don't keep the client beyond adding their publication
+;; or subscription.
+(deftype AeronClientPool [peer-config ^:volatile-mutable ^Set error-fns 
+                          ^:volatile-mutable ^AtomicBoolean failed
+                          ^:volatile-mutable ^Aeron conn
+                          ^:volatile-mutable ^long leases
+                          ^:volatile-mutable ^long connects]
+  PClientPool
+  (lease! [this error-fn]
+    (locking this
+      (when (and conn (.get failed))
+        (info "Replacing failed shared Aeron client")
+        (close-client! conn)
+        (set! conn nil))
+      (when (nil? conn)
+        (set! error-fns (ConcurrentHashMap/newKeySet))
+        (set! failed (AtomicBoolean. false))
+        (set! leases 0)
+        (set! conn (connect peer-config error-fns failed))
+        (set! connects (inc connects))
+        (info "Started shared Aeron client for peer group"))
+      (.add error-fns error-fn)
+      (set! leases (inc leases))
+      conn))
+  (release! [this error-fn]
+    (locking this
+      (when (.remove error-fns error-fn)
+        (set! leases (dec leases)))
+      this))
+  (pool-info [this]
+    {:clients (if conn 1 0)
+     :conductors (if conn 1 0)
+     :leases leases
+     :connects connects})
+  (stop [this]
+    (locking this
+      (when conn
+        (when (pos? leases)
+          (warn "Closing shared Aeron client with outstanding leases" {:leases leases}))
+        (close-client! conn)
+        (set! conn nil))
+      (.clear error-fns)
+      (set! leases 0)
+      this)))
+
+(defn new-client-pool [peer-config]
+  (->AeronClientPool peer-config (ConcurrentHashMap/newKeySet) (AtomicBoolean. false) nil 0 0))
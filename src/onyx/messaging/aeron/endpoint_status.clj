@@ -1,6 +1,7 @@
 (ns onyx.messaging.aeron.endpoint-status
   (:require [onyx.compression.nippy :refer [messaging-compress messaging-decompress]]
             [onyx.messaging.aeron.utils :as autil :refer [action->kw stream-id heartbeat-stream-id]]
+            [onyx.messaging.aeron.client-pool :as pool]
             [onyx.messaging.common :as common]
             [onyx.messaging.serialize :as sz]
             [onyx.messaging.protocols.endpoint-status :as endpoint-status]
@@ -8,12 +9,11 @@
             [onyx.static.default-vals :refer [arg-or-default]]
             [onyx.static.util :refer [ms->ns]]
             [taoensso.timbre :refer [debug info warn trace] :as timbre])
-  (:import [io.aeron Aeron Aeron$Context Publication Subscription Image 
-            UnavailableImageHandler AvailableImageHandler FragmentAssembler]
+  (:import [io.aeron Aeron Publication Subscription Image FragmentAssembler]
            [io.aeron.logbuffer FragmentHandler]
            [io.aeron.logbuffer ControlledFragmentHandler ControlledFragmentHandler$Action]
-           [org.agrona ErrorHandler]
-           [org.agrona.concurrent UnsafeBuffer]))
+           [org.agrona.concurrent UnsafeBuffer]
+           [onyx.serialization HeartbeatDecoder ReadyReplyDecoder]))
 
 ;; FIXME to be tuned
 (def fragment-limit-receiver 1000)
@@ -28,40 +28,71 @@
                   :min-epoch initialize-epoch}]))
        (into {})))
 
-(defn statuses->ready? [statuses]
-  (not (some false? (map (comp :ready? val) statuses))))
+(defn statuses->not-ready [statuses]
+  (count (remove (comp :ready? val) statuses)))
 
 (defn statuses->min-epoch [statuses]
   (reduce min (map :epoch (vals statuses))))
 
+(defn statuses->min-reported-epoch
+  "The lowest min epoch reported by the endpoint peers, i.e. the lowest epoch
+   that has made it all the way downstream."
+  [statuses]
+  (reduce min Long/MAX_VALUE (keep :min-epoch (vals statuses))))
+
+(defn statuses->checkpointing [statuses]
+  (count (filter (comp :checkpointing? val) statuses)))
+
+(defn lookup-peer-id
+  "Finds the expected peer matching an encoded peer id, without allocating."
+  [^objects peer-ids peer-type msb lsb]
+  (loop [i 0]
+    (when (< i (alength peer-ids))
+      (let [peer-id (aget peer-ids i)]
+        (if (sz/peer-id-matches? peer-id peer-type msb lsb)
+          peer-id
+          (recur (inc i)))))))
+
+(defn flag->status [flag]
+  (when-not (= flag sz/flag-absent)
+    (sz/flag->opt flag)))
+
 (deftype EndpointStatus 
-  [peer-config peer-id session-id ^Aeron conn ^Subscription subscription error
+  [peer-config client-pool peer-id session-id ^Subscription subscription 
+   ^Subscription ipc-subscription error error-fn
+   ^HeartbeatDecoder heartbeat-decoder ^ReadyReplyDecoder ready-reply-decoder
+   ^:unsynchronized-mutable ^objects peer-ids
    ^:unsynchronized-mutable replica-version ^:unsynchronized-mutable epoch 
-   ^:unsynchronized-mutable statuses        ^:unsynchronized-mutable ready
-   ^:unsynchronized-mutable min-epoch]
+   ^:unsynchronized-mutable statuses
+   ;; readiness, epochs and checkpointing are maintained as statuses arrive,
+   ;; so that publishers and barrier statuses only read them.
+   ;; not-ready is -1 until the endpoint peers are set
+   ^:unsynchronized-mutable ^long not-ready
+   ^:unsynchronized-mutable ^long min-epoch
+   ^:unsynchronized-mutable ^long min-reported
+   ^:unsynchronized-mutable ^long checkpointing]
   onyx.messaging.protocols.endpoint-status/EndpointStatus
   (start [this]
-    (let [error-handler (reify ErrorHandler
-                          (onError [this x] 
-                            (reset! error x)))
-          media-driver-dir ^String (:onyx.messaging.aeron/media-driver-dir peer-config)
-          ctx (cond-> (Aeron$Context.)
-                error-handler (.errorHandler error-handler)
-                media-driver-dir (.aeronDirectoryName media-driver-dir))
-          conn (Aeron/connect ctx)
+    (let [conn (pool/lease! client-pool error-fn)
           channel (autil/channel peer-config)
-          sub (.addSubscription conn channel heartbeat-stream-id)]
+          sub (.addSubscription conn channel heartbeat-stream-id)
+          ;; status publishers on the same media driver reply over IPC
+          ipc-sub (when (arg-or-default :onyx.messaging.aeron/allow-ipc? peer-config)
+                    (.addSubscription conn autil/ipc-channel (autil/local-ipc-heartbeat-stream-id peer-config)))]
       (info "Started endpoint status on peer:" peer-id)
-      (EndpointStatus. peer-config peer-id session-id conn sub error 
-                       replica-version epoch statuses min-epoch ready)))
+      (EndpointStatus. peer-config client-pool peer-id session-id sub ipc-sub error error-fn
+                       heartbeat-decoder ready-reply-decoder peer-ids replica-version epoch statuses not-ready min-epoch 
+                       min-reported checkpointing)))
   (stop [this]
     (info "Stopping endpoint status" [peer-id])
     (try
      (.close subscription)
+     (when ipc-subscription (.close ipc-subscription))
      (catch Throwable t
        (info "Error closing endpoint subscription:" t)))
-     (.close conn)
-    (EndpointStatus. peer-config peer-id session-id nil nil error nil nil nil nil false))
+    (when subscription (pool/release! client-pool error-fn))
+    (EndpointStatus. peer-config client-pool peer-id session-id nil nil error error-fn
+                     heartbeat-decoder ready-reply-decoder peer-ids nil nil nil -1 initialize-epoch initialize-epoch 0))
   (info [this]
     [:rv replica-version
      :e epoch
@@ -71,74 +102,108 @@
      :closed? (.isClosed subscription)
      :images (mapv autil/image->map (.images subscription))
      :statuses statuses
-     :ready? ready])
+     :ready? (zero? not-ready)
+     :min-epoch min-epoch
+     :min-reported-epoch min-reported
+     :checkpointing? (pos? checkpointing)])
   (poll! [this]
     (when @error (throw @error))
-    (.poll ^Subscription subscription ^FragmentHandler this fragment-limit-receiver))
+    (cond-> (.poll ^Subscription subscription ^FragmentHandler this fragment-limit-receiver)
+      ipc-subscription (+ (.poll ipc-subscription ^FragmentHandler this fragment-limit-receiver))))
   (set-endpoint-peers! [this expected-peers]
     (->> expected-peers
          (initial-statuses)
          (set! statuses))
-    (set! min-epoch (statuses->min-epoch statuses))
-    (set! ready (statuses->ready? statuses))
+    (set! peer-ids (object-array (keys statuses)))
+    (set! min-epoch (long (statuses->min-epoch statuses)))
+    (set! not-ready (long (statuses->not-ready statuses)))
+    (set! min-reported (long (statuses->min-reported-epoch statuses)))
+    (set! checkpointing (long (statuses->checkpointing statuses)))
     this)
   (ready? [this]
-    ready)
+    (zero? not-ready))
   (statuses [this]
     statuses)
   (min-endpoint-epoch [this]
     min-epoch)
+  (min-reported-epoch [this]
+    min-reported)
+  (checkpointing? [this]
+    (pos? checkpointing))
   (set-replica-version! [this new-replica-version]
     (assert new-replica-version)
     (set! replica-version new-replica-version)
     (->> (keys statuses)
          (initial-statuses)
          (set! statuses))
-    (set! min-epoch (statuses->min-epoch statuses))
-    (set! ready (statuses->ready? statuses))
+    (set! min-epoch (long (statuses->min-epoch statuses)))
+    (set! not-ready (long (statuses->not-ready statuses)))
+    (set! min-reported (long (statuses->min-reported-epoch statuses)))
+    (set! checkpointing (long (statuses->checkpointing statuses)))
     this)
   FragmentHandler
   (onFragment [this buffer offset length header]
-    (let [;; don't even grab the first value out because it's in the message, at least for now
-          message (sz/deserialize buffer (inc offset) (dec length))
-          msg-rv (:replica-version message)
-          msg-sess (:session-id message)]
-      (when (and (= session-id msg-sess) 
-                 (= replica-version msg-rv))
-        (case (int (:type message))
-          2 (when (= peer-id (:dst-peer-id message))
-              (let [src-peer-id (:src-peer-id message)
-                    epoch (:epoch message)
-                    peer-status (or (get statuses src-peer-id) 
+    (let [msg-type (sz/get-message-type buffer offset)]
+      (case (int msg-type)
+        2 (let [decoder (sz/wrap-heartbeat-decoder heartbeat-decoder buffer (unchecked-add-int offset 1))]
+            (when (and (= session-id (.sessionId decoder)) 
+                       (= replica-version (.replicaVersion decoder))
+                       (sz/peer-id-matches? peer-id (.dstPeerType decoder) 
+                                            (.dstPeerMsb decoder) (.dstPeerLsb decoder)))
+              (let [src-peer-id (or (lookup-peer-id peer-ids (.srcPeerType decoder) 
+                                                    (.srcPeerMsb decoder) (.srcPeerLsb decoder))
                                     (throw (Exception. "Heartbeating peer does not exist for this replica-version.")))
-                    prev-epoch (:epoch peer-status)]
+                    epoch (.epoch decoder)
+                    peer-status (get statuses src-peer-id)
+                    prev-epoch (long (:epoch peer-status))
+                    prev-reported (:min-epoch peer-status)
+                    checkpointing? (flag->status (.checkpointing decoder))
+                    reported (let [min-epoch (.minEpoch decoder)]
+                               (when-not (= min-epoch (HeartbeatDecoder/minEpochNullValue))
+                                 min-epoch))]
                 (when-not (or (= epoch (inc prev-epoch))
                               (= epoch prev-epoch))
                   (throw (ex-info "Received epoch is not in sync with expected epoch." 
                                   {:our-replica-version replica-version
                                    :prev-epoch prev-epoch
                                    :epoch epoch
-                                   :message message})))
-
-                (->> (update statuses src-peer-id merge {:checkpointing? (:checkpointing? message)
-                                                         :replica-version (:replica-version message)
-                                                         :epoch (:epoch message)
-                                                         :drained? (if (contains? message :drained?)
-                                                                     (:drained? message)
-                                                                     false)
-                                                         :min-epoch (:min-epoch message)
+                                   :message (str decoder)})))
+                (->> (update statuses src-peer-id merge {:checkpointing? checkpointing?
+                                                         :replica-version replica-version
+                                                         :epoch epoch
+                                                         :drained? (sz/flag->opt (.drained decoder))
+                                                         :min-epoch reported
                                                          :heartbeat (System/nanoTime)}) 
                      (set! statuses))
-                (set! min-epoch (statuses->min-epoch statuses))))
+                (cond (and checkpointing? (not (:checkpointing? peer-status)))
+                      (set! checkpointing (inc checkpointing))
+                      (and (not checkpointing?) (:checkpointing? peer-status))
+                      (set! checkpointing (dec checkpointing)))
+                (when (and (not= reported prev-reported)
+                           (or (= prev-reported min-reported)
+                               (and reported (< (long reported) min-reported))))
+                  (set! min-reported (long (statuses->min-reported-epoch statuses))))
+                ;; the minimum can only move when a peer at the minimum advances
+                (when (and (not= epoch prev-epoch) (= prev-epoch min-epoch))
+                  (set! min-epoch (long (statuses->min-epoch statuses)))))))
 
-          4 (when (= peer-id (:dst-peer-id message))
-              (let [src-peer-id (:src-peer-id message)] 
+        4 (let [decoder (sz/wrap-ready-reply-decoder ready-reply-decoder buffer (unchecked-add-int offset 1))]
+            (when (and (= session-id (.sessionId decoder)) 
+                       (= replica-version (.replicaVersion decoder))
+                       (sz/peer-id-matches? peer-id (.dstPeerType decoder) 
+                                            (.dstPeerMsb decoder) (.dstPeerLsb decoder)))
+              (when-let [src-peer-id (lookup-peer-id peer-ids (.srcPeerType decoder) 
+                                                     (.srcPeerMsb decoder) (.srcPeerLsb decoder))] 
+                (when-not (:ready? (get statuses src-peer-id))
+                  (set! not-ready (dec not-ready)))
                 (->> (update statuses src-peer-id merge {:ready? true 
                                                          :heartbeat (System/nanoTime)}) 
-                     (set! statuses))
-                (set! ready (statuses->ready? statuses))))
+                     (set! statuses)))))
 
-          (throw (ex-info "Invalid message type" {:message message})))))))
+        (throw (ex-info "Invalid message type" {:message-type msg-type}))))))
 
-(defn new-endpoint-status [peer-config peer-id session-id]
-  (->EndpointStatus peer-config peer-id session-id nil nil (atom nil) nil nil nil nil false)) 
+(defn new-endpoint-status [peer-config client-pool peer-id session-id]
+  (let [error (atom nil)]
+    (->EndpointStatus peer-config client-pool peer-id session-id nil nil error 
+                      (fn [x] (reset! error x)) (HeartbeatDecoder.) (ReadyReplyDecoder.) 
+                      (object-array 0) nil nil nil -1 initialize-epoch initialize-epoch 0)))
@@ -0,0 +1,133 @@
+(ns ^:no-doc onyx.messaging.aeron.frame-compression
+  "LZ4 compression of the segments group of a Message frame, for publications
+   that leave the local host. The frame keeps its message block uncompressed so that
+   subscribers can check the replica version and short id before decompressing.
+
+   Compressed frame layout:
+   [compressed-message-id][message block][uncompressed group length, int32 LE][lz4 group]"
+  (:require [onyx.messaging.serialize :as sz])
+  (:import [net.jpountz.lz4 LZ4Factory LZ4Compressor LZ4FastDecompressor]
+           [org.agrona.concurrent UnsafeBuffer]
+           [java.nio ByteOrder]
+           [java.util.concurrent.atomic AtomicLong]
+           [com.codahale.metrics Histogram]
+           [onyx.serialization MessageEncoder]))
+
+(defprotocol PFrameCompressor
+  (compress-frame! [this buf length]
+    "Compresses a Message frame of length bytes in buf. Returns the length of the
+     compressed frame, or -1 if the frame should be sent uncompressed.")
+  (compressed-buffer [this])
+  (compression-info [this]))
+
+(defprotocol PFrameDecompressor
+  (decompress-frame! [this buf offset length]
+    "Decompresses a compressed frame into a buffer laid out as an uncompressed
+     Message frame without the message type, and returns that buffer."))
+
+(def ^LZ4Factory lz4-factory (LZ4Factory/fastestInstance))
+
+(def block-offset 1)
+
+(def group-offset (+ block-offset MessageEncoder/BLOCK_LENGTH))
+
+(def compressed-group-offset (+ group-offset 4))
+
+;; Frames smaller than this rarely compress well enough to pay for themselves
+(def min-frame-length 512)
+
+;; Send the frame uncompressed unless the group shrinks to at most this ratio
+(def max-compression-ratio 0.85)
+
+;; After a frame compresses poorly, skip compression for an exponentially
+;; growing number of frames, so incompressible streams cost almost nothing
+(def max-skip-frames 1024)
+
+(deftype Lz4FrameCompressor [^LZ4Compressor compressor ^bytes out ^UnsafeBuffer out-buf
+                             ^Histogram compression-percent ^AtomicLong task-compression-ns
+                             ^:unsynchronized-mutable ^long skip-frames
+                             ^:unsynchronized-mutable ^long backoff
+                             ^:unsynchronized-mutable ^long uncompressed-bytes
+                             ^:unsynchronized-mutable ^long compressed-bytes
+                             ^:unsynchronized-mutable ^long compression-ns
+                             ^:unsynchronized-mutable ^long skipped-frames]
+  PFrameCompressor
+  (compress-frame! [this buf length]
+    (let [buf ^UnsafeBuffer buf
+          length (long length)
+          src (.byteArray buf)]
+      (cond (or (nil? src)
+                (< length min-frame-length)
+                (not= sz/message-id (sz/get-message-type buf 0)))
+            -1
+
+            (pos? skip-frames)
+            (do (set! skip-frames (dec skip-frames))
+                (set! skipped-frames (inc skipped-frames))
+                -1)
+
+            :else
+            (let [start (System/nanoTime)
+                  group-length (- length group-offset)
+                  n (.compress compressor src (int group-offset) (int group-length)
+                               out (int compressed-group-offset)
+                               (int (- (alength out) compressed-group-offset)))
+                  compressed-length (+ (long compressed-group-offset) n)
+                  elapsed (- (System/nanoTime) start)]
+              (set! compression-ns (+ compression-ns elapsed))
+              (when task-compression-ns (.addAndGet task-compression-ns elapsed))
+              (when compression-percent
+                (.update compression-percent (quot (* 100 (+ n 4)) group-length)))
+              (set! uncompressed-bytes (+ uncompressed-bytes group-length))
+              (if (<= (+ n 4) (* max-compression-ratio group-length))
+                (do (set! backoff 0)
+                    (set! compressed-bytes (+ compressed-bytes n 4))
+                    (sz/put-message-type out-buf 0 sz/compressed-message-id)
+                    (.putBytes out-buf (int block-offset) buf (int block-offset) (int MessageEncoder/BLOCK_LENGTH))
+                    (.putInt out-buf (int group-offset) (int group-length) ByteOrder/LITTLE_ENDIAN)
+                    compressed-length)
+                (do (set! backoff (min max-skip-frames (max 1 (* 2 backoff))))
+                    (set! skip-frames backoff)
+                    (set! compressed-bytes (+ compressed-bytes group-length))
+                    -1))))))
+  (compressed-buffer [this] out-buf)
+  (compression-info [this]
+    {:ratio (if (zero? uncompressed-bytes)
+              1.0
+              (double (/ compressed-bytes uncompressed-bytes)))
+     :uncompressed-bytes uncompressed-bytes
+     :compressed-bytes compressed-bytes
+     :compression-ns compression-ns
+     :skipped-frames skipped-frames}))
+
+(defn new-frame-compressor [monitoring max-message-length]
+  (let [compressor (.fastCompressor lz4-factory)
+        out (byte-array (+ (long compressed-group-offset)
+                           (.maxCompressedLength compressor (int max-message-length))))]
+    (->Lz4FrameCompressor compressor out (UnsafeBuffer. out)
+                          (:frame-compression-percent monitoring) (:frame-compression-ns monitoring)
+                          0 0 0 0 0 0)))
+
+;; Buffers are allocated on the first compressed frame, as most subscriptions
+;; only ever receive frames from the local host
+(deftype Lz4FrameDecompressor [^LZ4FastDecompressor decompressor ^long max-message-length
+                               ^:unsynchronized-mutable ^bytes compressed
+                               ^:unsynchronized-mutable ^bytes inflated
+                               ^:unsynchronized-mutable ^UnsafeBuffer inflated-buf]
+  PFrameDecompressor
+  (decompress-frame! [this buf offset length]
+    (when (nil? compressed)
+      (set! compressed (byte-array max-message-length))
+      (set! inflated (byte-array (+ MessageEncoder/BLOCK_LENGTH max-message-length)))
+      (set! inflated-buf (UnsafeBuffer. inflated)))
+    (let [buf ^UnsafeBuffer buf
+          offset (long offset)
+          compressed-length (- (long length) compressed-group-offset)
+          group-length (.getInt buf (int (+ offset group-offset)) ByteOrder/LITTLE_ENDIAN)]
+      (.putBytes inflated-buf 0 buf (int (+ offset block-offset)) (int MessageEncoder/BLOCK_LENGTH))
+      (.getBytes buf (int (+ offset compressed-group-offset)) compressed 0 (int compressed-length))
+      (.decompress decompressor compressed 0 inflated (int MessageEncoder/BLOCK_LENGTH) (int group-length))
+      inflated-buf)))
+
+(defn new-frame-decompressor [max-message-length]
+  (->Lz4FrameDecompressor (.fastDecompressor lz4-factory) max-message-length nil nil nil))
@@ -1,6 +1,9 @@
 (ns onyx.messaging.aeron.messaging-group
   (:require [onyx.messaging.common :as common]
             [onyx.messaging.aeron.embedded-media-driver :as md]
+            [onyx.messaging.aeron.client-pool :as pool]
+            [onyx.messaging.aeron.ticket-counters :as tc]
+            [onyx.messaging.aeron.short-circuit :as sc]
             [onyx.messaging.protocols.messenger :as m]
             [onyx.static.default-vals :refer [arg-or-default]]
             [com.stuartsierra.component :as component]
@@ -10,18 +13,25 @@
   component/Lifecycle
   (start [component]
     (taoensso.timbre/info "Starting Aeron Peer Group")
-    (let [ticket-counters (atom {})
-          embedded-media-driver (component/start (md/->EmbeddedMediaDriver peer-config))]
+    (let [ticket-counters (tc/ticket-counters)
+          embedded-media-driver (component/start (md/->EmbeddedMediaDriver peer-config))
+          ;; connected lazily, so that it is only started after the media driver
+          client-pool (pool/new-client-pool peer-config)]
       (assoc component
              :ticket-counters ticket-counters
+             :short-circuit (sc/new-registry)
+             :client-pool client-pool
              :embedded-media-driver embedded-media-driver)))
 
-  (stop [{:keys [embedded-media-driver] :as component}]
+  (stop [{:keys [embedded-media-driver client-pool] :as component}]
     (taoensso.timbre/info "Stopping Aeron Peer Group")
+    (when client-pool (pool/stop client-pool))
     (component/stop embedded-media-driver)
     (assoc component 
            :embedded-media-driver nil 
-           :ticket-counters nil)))
+           :client-pool nil
+           :ticket-counters nil
+           :short-circuit nil)))
 
 (defmethod m/build-messenger-group :aeron [peer-config]
   (map->AeronMessengerPeerGroup {:peer-config peer-config}))
@@ -12,11 +12,15 @@
             [onyx.messaging.protocols.subscriber :as sub]
             [onyx.messaging.aeron.subscriber :refer [new-subscription]]
             [onyx.messaging.aeron.publisher :refer [reconcile-pub]]
+            [onyx.messaging.aeron.client-pool :as pool]
+            [onyx.messaging.aeron.ticket-counters :as tc]
+            [onyx.messaging.aeron.short-circuit :as sc]
             [onyx.compression.nippy :refer [messaging-compress messaging-decompress]]
             [onyx.static.default-vals :refer [arg-or-default]])
   (:import [io.aeron Aeron Aeron$Context Publication Subscription]
            [org.agrona.concurrent UnsafeBuffer IdleStrategy BackoffIdleStrategy BusySpinIdleStrategy]
            [onyx.messaging.aeron.publisher Publisher]
+           [onyx.serialization BarrierEncoder]
            [java.util.function Consumer]
            [java.util.concurrent TimeUnit]))
 
@@ -28,12 +32,13 @@
 (defmethod m/get-peer-site :aeron
   [peer-config]
   {:address (common/external-addr peer-config)
-   :port (:onyx.messaging/peer-port peer-config)})
+   :port (:onyx.messaging/peer-port peer-config)
+   :aeron/media-driver-dir (autil/media-driver-dir peer-config)})
 
 (defn flatten-publishers [publishers]
   (reduce into [] (vals publishers)))
 
-(defn transition-publishers [peer-config monitoring messenger publishers pub-infos]
+(defn transition-publishers [peer-config client-pool short-circuit monitoring messenger publishers pub-infos]
   (let [m-prev (into {} 
                      (map (juxt pub/key identity))
                      (flatten-publishers publishers))
@@ -47,7 +52,7 @@
          (keep (fn [k]
                  (let [old (m-prev k)
                        new (m-next k)]
-                   (reconcile-pub monitoring peer-config old new))))
+                   (reconcile-pub peer-config client-pool short-circuit monitoring old new))))
          (group-by (fn [^Publisher pub]
                      [(.dst-task-id pub) (.slot-id pub)])))))
 
@@ -55,9 +60,12 @@
                          monitoring
                          id 
                          ticket-counters 
+                         ^UnsafeBuffer control-buf
+                         ^BarrierEncoder barrier-encoder
                          ^:unsynchronized-mutable replica-version 
                          ^:unsynchronized-mutable epoch 
                          ^:unsynchronized-mutable publishers 
+                         ^:unsynchronized-mutable flat-publishers 
                          ^:unsynchronized-mutable task-publishers 
                          ^:unsynchronized-mutable subscriber]
   component/Lifecycle
@@ -70,6 +78,7 @@
     (set! replica-version nil)
     (set! epoch nil)
     (set! publishers nil)
+    (set! flat-publishers nil)
     (set! task-publishers nil)
     (set! subscriber nil)
     component)
@@ -78,7 +87,7 @@
   (id [this] id)
 
   (publishers [messenger]
-    (flatten-publishers publishers))
+    flat-publishers)
 
   (task->publishers [messenger dst-task-id]
     (get task-publishers dst-task-id))
@@ -87,18 +96,22 @@
     subscriber)
 
   (info [messenger]
-    {:ticket-counters @ticket-counters
+    {:ticket-counters (tc/counters->map ticket-counters)
      :replica-version replica-version
      :epoch epoch
      :channel (autil/channel (:peer-config messenger-group))
+     :aeron-client (pool/pool-info (:client-pool messenger-group))
      :publishers (mapv pub/info (m/publishers messenger))
      :subscriber (sub/info subscriber)})
 
   (update-publishers [messenger pub-infos]
     (set! publishers (transition-publishers (:peer-config messenger-group) 
+                                            (:client-pool messenger-group)
+                                            (:short-circuit messenger-group)
                                             monitoring
                                             messenger publishers pub-infos))
-    (set! task-publishers (->> (flatten-publishers publishers)
+    (set! flat-publishers (flatten-publishers publishers))
+    (set! task-publishers (->> flat-publishers
                                (group-by #(second (.dst-task-id ^Publisher %)))
                                (map (fn [[k pubs]]
                                       [k (->> pubs
@@ -114,6 +127,8 @@
            (or subscriber
                (sub/start 
                 (new-subscription (:peer-config messenger-group) 
+                                  (:client-pool messenger-group)
+                                  (:short-circuit messenger-group)
                                   monitoring
                                   id
                                   ticket-counters
@@ -148,17 +163,39 @@
   (poll [messenger]
     (sub/poll! subscriber))
 
+  (barrier-pending? [messenger]
+    (boolean (and subscriber (sub/barrier-pending? subscriber))))
+
+  (poll-heartbeats [messenger]
+    (run! pub/poll-heartbeats! flat-publishers)
+    messenger)
+
   (offer-barrier [messenger publisher]
     (onyx.messaging.protocols.messenger/offer-barrier messenger publisher {}))
 
   (offer-barrier [messenger publisher barrier-opts]
-    (let [barrier (merge (t/barrier replica-version epoch (pub/short-id publisher)) barrier-opts)
-          buf (sz/serialize barrier)]
-      (let [ret (pub/offer! publisher buf (.capacity buf) (dec epoch))] 
-        (debug "Offer barrier:" [:ret ret :message barrier :pub (pub/info publisher)])
+    (if (pub/short-circuit? publisher)
+      (let [barrier (sc/->ShortCircuitBarrier replica-version epoch (pub/short-id publisher) barrier-opts)
+            ret (pub/offer-short-circuit! publisher barrier (dec epoch))]
+        (debug "Offer short circuit barrier:" [:ret ret :replica-version replica-version :epoch epoch 
+                                               :opts barrier-opts :pub (pub/info publisher)])
+        ret)
+      (let [payload (sz/recover-payload barrier-opts)
+            short-id (pub/short-id publisher)
+            ret (pub/offer-claimed! publisher 
+                                    (sz/barrier-buffer control-buf payload)
+                                    (sz/barrier-length payload)
+                                    (fn [buf offset]
+                                      (sz/encode-barrier! buf offset barrier-encoder replica-version epoch 
+                                                          short-id barrier-opts payload))
+                                    (dec epoch))] 
+        (debug "Offer barrier:" [:ret ret :replica-version replica-version :epoch epoch 
+                                 :opts barrier-opts :pub (pub/info publisher)])
         ret))))
 
 (defmethod m/build-messenger :aeron [peer-config messenger-group monitoring id]
   (->AeronMessenger messenger-group monitoring id 
                     (:ticket-counters messenger-group) 
-                    nil nil nil nil nil))
+                    (sz/control-buffer)
+                    (BarrierEncoder.)
+                    nil nil nil nil nil nil))
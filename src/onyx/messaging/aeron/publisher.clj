@@ -2,26 +2,38 @@
   (:require [onyx.messaging.common :as common]
             [onyx.messaging.protocols.endpoint-status :as endpoint-status]
             [onyx.messaging.protocols.publisher :as pub]
+            [onyx.messaging.protocols.messenger :as m]
             [onyx.messaging.aeron.endpoint-status :refer [new-endpoint-status]]
+            [onyx.messaging.aeron.client-pool :as pool]
+            [onyx.messaging.aeron.frame-compression :as fc]
+            [onyx.messaging.aeron.short-circuit :as sc]
             [onyx.messaging.aeron.utils :as autil :refer [action->kw stream-id heartbeat-stream-id max-message-length]]
             [onyx.messaging.serialize :as sz]
             [onyx.peer.constants :refer [NOT_READY ENDPOINT_BEHIND]]
-            [onyx.types :refer [heartbeat ready]]
+            [onyx.static.default-vals :refer [arg-or-default]]
             [onyx.compression.nippy :refer [messaging-compress messaging-decompress]]
             [taoensso.timbre :refer [debug info warn] :as timbre])
-  (:import [io.aeron Aeron Aeron$Context Publication UnavailableImageHandler AvailableImageHandler]
+  (:import [io.aeron Aeron Publication]
+           [io.aeron.logbuffer BufferClaim]
            [java.util.concurrent.atomic AtomicLong]
            [org.agrona.concurrent UnsafeBuffer]
-           [org.agrona ErrorHandler]))
+           [java.util.concurrent CopyOnWriteArrayList]
+           [onyx.messaging.aeron.short_circuit ShortCircuitBarrier]
+           [onyx.serialization ReadyEncoder HeartbeatEncoder]))
 
-(deftype Publisher [peer-config src-peer-id dst-task-id slot-id site 
-                    ^AtomicLong written-bytes ^AtomicLong errors 
-                    ^Aeron conn ^Publication publication status-mon error
+(deftype Publisher [peer-config client-pool src-peer-id dst-task-id slot-id site 
+                    ^AtomicLong written-bytes ^AtomicLong errors error-fn
+                    ^Publication publication status-mon error
+                    ^UnsafeBuffer control-buf ^ReadyEncoder ready-encoder ^HeartbeatEncoder heartbeat-encoder
+                    ^BufferClaim claim compressor ^CopyOnWriteArrayList short-circuit
                     ^:unsynchronized-mutable short-id ^:unsynchronized-mutable replica-version 
-                    ^:unsynchronized-mutable epoch]
+                    ^:unsynchronized-mutable epoch
+                    ^:unsynchronized-mutable pending-barrier ^:unsynchronized-mutable pending-queues
+                    ;; recent back pressured offers, halved on each successful offer
+                    ^:unsynchronized-mutable ^long back-pressured]
   pub/Publisher
   (info [this]
-    (let [dst-channel (autil/channel (:address site) (:port site))] 
+    (let [dst-channel (autil/dst-channel peer-config site)] 
       (assert (= dst-channel (.channel publication)))
       {:rv replica-version
        :e epoch
@@ -34,7 +46,11 @@
        :ready? (pub/ready? this)
        :session-id (.sessionId publication) 
        :stream-id (.streamId publication)
-       :pos (.position publication)}))
+       :pos (.position publication)
+       :compression (some-> compressor fc/compression-info)
+       :short-circuit? (pub/short-circuit? this)
+       :available-window (pub/available-window this)
+       :back-pressured back-pressured}))
   (key [this]
     [src-peer-id dst-task-id slot-id site])
   (equiv-meta [this pub-info]
@@ -59,17 +75,9 @@
     (endpoint-status/set-endpoint-peers! status-mon expected-peers)
     this)
   (start [this]
-    (let [error-handler (reify ErrorHandler
-                          (onError [this x] 
-                            (.addAndGet errors 1)
-                            (reset! error x)))
-          media-driver-dir (:onyx.messaging.aeron/media-driver-dir peer-config)
-          ctx (cond-> (Aeron$Context.)
-                error-handler (.errorHandler error-handler)
-                media-driver-dir (.aeronDirectoryName ^String media-driver-dir))
+    (let [conn (pool/lease! client-pool error-fn)
           stream-id (onyx.messaging.aeron.utils/stream-id dst-task-id slot-id site)
-          conn (Aeron/connect ctx)
-          channel (autil/channel (:address site) (:port site))
+          channel (autil/dst-channel peer-config site)
           pub (.addPublication conn channel stream-id)
           _ (when-not (= (.maxMessageLength pub) (max-message-length))
               (throw (ex-info (format "Max message payload differs between Aeron media driver and client.
@@ -77,9 +85,10 @@
                                       autil/term-buffer-prop-name)
                               {:media-driver/max-length (.maxPayloadLength pub)
                                :publication/max-length (max-message-length)})))
-          status-mon (endpoint-status/start (new-endpoint-status peer-config src-peer-id (.sessionId pub)))]
-      (Publisher. peer-config src-peer-id dst-task-id slot-id site written-bytes errors conn
-                  pub status-mon error short-id replica-version epoch))) 
+          status-mon (endpoint-status/start (new-endpoint-status peer-config client-pool src-peer-id (.sessionId pub)))]
+      (Publisher. peer-config client-pool src-peer-id dst-task-id slot-id site written-bytes errors error-fn
+                  pub status-mon error control-buf ready-encoder heartbeat-encoder claim compressor short-circuit
+                  short-id replica-version epoch nil nil 0))) 
   (stop [this]
     (info "Stopping publisher" (pub/info this))
     (when status-mon (endpoint-status/stop status-mon))
@@ -87,9 +96,10 @@
      (when publication (.close publication))
      (catch io.aeron.exceptions.RegistrationException re
        (info "Registration exception stopping publisher:" re)))
-    (when conn (.close conn))
-    (Publisher. peer-config src-peer-id dst-task-id slot-id site written-bytes 
-                errors nil nil nil error nil nil nil))
+    (when publication (pool/release! client-pool error-fn))
+    (Publisher. peer-config client-pool src-peer-id dst-task-id slot-id site written-bytes 
+                errors error-fn nil nil error control-buf ready-encoder heartbeat-encoder 
+                claim compressor short-circuit nil nil nil nil nil 0))
   (endpoint-status [this]
     status-mon)
   (ready? [this]
@@ -97,49 +107,137 @@
   (statuses [this]
     (endpoint-status/statuses status-mon))
   (offer-ready! [this]
-    (let [msg (ready replica-version src-peer-id short-id)
-          buf (sz/serialize msg)
-          ret (.offer ^Publication publication buf 0 (.capacity buf))]
-      (debug "Offered ready message:" [ret msg :session-id (.sessionId publication) :site site])
+    (let [ret (autil/offer-claimed! publication claim control-buf sz/ready-length
+                                    (fn [buf offset]
+                                      (sz/encode-ready! buf offset ready-encoder replica-version short-id)))]
+      (debug "Offered ready message:" [ret replica-version short-id :session-id (.sessionId publication) :site site])
       ret))
   (offer-heartbeat! [this]
-    (let [msg (heartbeat replica-version epoch src-peer-id :any (.sessionId publication) short-id)
-          buf (sz/serialize msg)
-          ret (.offer ^Publication publication buf 0 (.capacity buf))] 
-      (debug "Pub offer heartbeat" (autil/channel (:address site) (:port site)) ret msg)
+    (let [ret (autil/offer-claimed! publication claim control-buf sz/heartbeat-length
+                                    (fn [buf offset]
+                                      (sz/encode-heartbeat! buf offset heartbeat-encoder replica-version epoch 
+                                                            src-peer-id :any (.sessionId publication) short-id {})))] 
+      (debug "Pub offer heartbeat" (autil/dst-channel peer-config site) ret replica-version epoch)
       ret))
   (poll-heartbeats! [this]
     (endpoint-status/poll! status-mon)
     this)
   (offer! [this buf length endpoint-epoch]
     (when @error (throw @error))
-    ;; TODO, remove the need to poll before every offer
-    (endpoint-status/poll! status-mon)
+    ;; endpoint statuses are polled once per task iteration, see poll-heartbeats!
+    (cond (not (endpoint-status/ready? status-mon))
+          (do
+           (pub/offer-ready! this)
+           NOT_READY)
+
+          (>= (endpoint-status/min-endpoint-epoch status-mon) endpoint-epoch)
+          (let [compressed-length (if compressor (fc/compress-frame! compressor buf length) -1)
+                ret (if (neg? compressed-length)
+                      (.offer ^Publication publication ^UnsafeBuffer buf 0 length)
+                      (.offer ^Publication publication ^UnsafeBuffer (fc/compressed-buffer compressor) 0 compressed-length))]
+            (if (pos? ret) 
+              (do (.addAndGet written-bytes (if (neg? compressed-length) length compressed-length))
+                  (set! back-pressured (quot back-pressured 2)))
+              (when (= ret Publication/BACK_PRESSURED)
+                (set! back-pressured (inc back-pressured))))
+            ret)
+
+          :else
+          ENDPOINT_BEHIND))
+  (offer-claimed! [this fallback-buf length encode-fn endpoint-epoch]
+    (when @error (throw @error))
     (cond (not (endpoint-status/ready? status-mon))
           (do
            (pub/offer-ready! this)
            NOT_READY)
 
           (>= (endpoint-status/min-endpoint-epoch status-mon) endpoint-epoch)
-          (let [ret (.offer ^Publication publication ^UnsafeBuffer buf 0 length)]
+          (let [ret (autil/offer-claimed! publication claim fallback-buf length encode-fn)]
             (when (pos? ret) (.addAndGet written-bytes length))
             ret)
 
+          :else
+          ENDPOINT_BEHIND))
+  (short-circuit? [this]
+    ;; until a subscriber in this peer group registers its queue, e.g. when
+    ;; the subscriber is in another process on the same host, segments are
+    ;; sent over the publication
+    (boolean (and short-circuit (not (.isEmpty short-circuit)))))
+  (available-window [this]
+    (let [free (if (pub/short-circuit? this)
+                 (sc/available-fraction short-circuit)
+                 ;; the publication window defaults to half a term
+                 (/ (double (max 0 (- (.positionLimit publication) (.position publication))))
+                    (quot (.termBufferLength publication) 2)))]
+      (/ (min 1.0 free) 
+         (double (bit-shift-left 1 (min back-pressured 30))))))
+  (offer-short-circuit! [this item endpoint-epoch]
+    (when @error (throw @error))
+    (cond (not (endpoint-status/ready? status-mon))
+          (do
+           (pub/offer-ready! this)
+           NOT_READY)
+
+          (>= (endpoint-status/min-endpoint-epoch status-mon) endpoint-epoch)
+          (if (instance? ShortCircuitBarrier item)
+            ;; a barrier that only some subscribers accepted is retried against the rest
+            (let [full (sc/offer-barrier! (if (= item pending-barrier) pending-queues short-circuit) item)]
+              (if (empty? full)
+                (do (set! pending-barrier nil)
+                    (set! pending-queues nil)
+                    1)
+                (do (set! pending-barrier item)
+                    (set! pending-queues full)
+                    Publication/BACK_PRESSURED)))
+            (if (sc/offer-batch! short-circuit item)
+              (do (set! back-pressured (quot back-pressured 2))
+                  1)
+              (do (set! back-pressured (inc back-pressured))
+                  Publication/BACK_PRESSURED)))
+
           :else
           ENDPOINT_BEHIND)))
 
+(defn remote-site? [peer-config site]
+  (not= (:address site) (common/external-addr peer-config)))
+
+(defn frame-compressor
+  "Frames are only compressed when they leave the local host. Publications
+   through the local media driver are not network bound."
+  [peer-config monitoring site]
+  (when (and (= :lz4 (arg-or-default :onyx.messaging.aeron/frame-compression peer-config))
+             (remote-site? peer-config site))
+    (fc/new-frame-compressor monitoring (max-message-length))))
+
+(defn short-circuit-queues
+  "Publications to the local peer group hand segments and barriers straight to
+   the subscribers' queues, rather than serializing them to the media driver."
+  [peer-config short-circuit dst-task-id slot-id site]
+  (when (and short-circuit
+             (arg-or-default :onyx.messaging/allow-short-circuit? peer-config)
+             (autil/same-site? site (m/get-peer-site peer-config)))
+    (sc/stream-queues short-circuit (sc/stream-key dst-task-id slot-id site))))
+
 (defn new-publisher 
-  [peer-config monitoring {:keys [src-peer-id dst-task-id slot-id site short-id] :as pub-info}]
-  (->Publisher peer-config src-peer-id dst-task-id slot-id site 
-               (:written-bytes monitoring) (:publication-errors monitoring) nil 
-               nil nil (atom nil) short-id nil nil))
+  [peer-config client-pool short-circuit monitoring {:keys [src-peer-id dst-task-id slot-id site short-id] :as pub-info}]
+  (let [errors ^AtomicLong (:publication-errors monitoring)
+        error (atom nil)
+        error-fn (fn [x]
+                   (.addAndGet errors 1)
+                   (reset! error x))]
+    (->Publisher peer-config client-pool src-peer-id dst-task-id slot-id site 
+                 (:written-bytes monitoring) errors error-fn 
+                 nil nil error (sz/control-buffer) (ReadyEncoder.) (HeartbeatEncoder.) (BufferClaim.)
+                 (frame-compressor peer-config monitoring site) 
+                 (short-circuit-queues peer-config short-circuit dst-task-id slot-id site)
+                 short-id nil nil nil nil 0)))
 
-(defn reconcile-pub [peer-config monitoring publisher pub-info]
+(defn reconcile-pub [peer-config client-pool short-circuit monitoring publisher pub-info]
   (if-let [pub (cond (and publisher (nil? pub-info))
                      (do (pub/stop publisher)
                          nil)
                      (and (nil? publisher) pub-info)
-                     (pub/start (new-publisher monitoring peer-config pub-info))
+                     (pub/start (new-publisher peer-config client-pool short-circuit monitoring pub-info))
                      :else
                      publisher)]
     (-> pub 
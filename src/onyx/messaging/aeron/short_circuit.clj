@@ -0,0 +1,74 @@
+(ns ^:no-doc onyx.messaging.aeron.short-circuit
+  "In process transport between virtual peers in the same peer group.
+   Segment batches and barriers are handed to the subscribers of a stream
+   through bounded lock-free queues, without being serialized or passing
+   through the media driver. The ready handshake, heartbeats and barrier
+   statuses still travel over Aeron, so endpoint epochs gate short circuited
+   publications exactly as they gate Aeron publications."
+  (:import [java.util.concurrent ConcurrentHashMap CopyOnWriteArrayList]
+           [java.util.function Function]
+           [org.agrona.concurrent ManyToOneConcurrentArrayQueue]))
+
+(defrecord ShortCircuitBatch [replica-version short-id segments])
+
+(defrecord ShortCircuitBarrier [replica-version epoch short-id opts])
+
+;; Queued batches and barriers per subscriber, before the publisher is back pressured
+(def queue-capacity 1024)
+
+(def ^Function new-stream-fn
+  (reify Function
+    (apply [_ _] (CopyOnWriteArrayList.))))
+
+(defn new-registry ^ConcurrentHashMap []
+  (ConcurrentHashMap.))
+
+(defn stream-key [dst-task-id slot-id site]
+  [dst-task-id slot-id site])
+
+(defn stream-queues
+  "Returns the live list of subscriber queues for a stream. Publishers hold onto
+   the list, so subscribers that start later are still seen."
+  ^CopyOnWriteArrayList [^ConcurrentHashMap registry stream-key]
+  (.computeIfAbsent registry stream-key new-stream-fn))
+
+(defn new-queue ^ManyToOneConcurrentArrayQueue []
+  (ManyToOneConcurrentArrayQueue. queue-capacity))
+
+(defn register! [registry stream-key queue]
+  (.add (stream-queues registry stream-key) ^Object queue))
+
+(defn unregister! [registry stream-key queue]
+  (.remove (stream-queues registry stream-key) ^Object queue))
+
+(defn offer-batch!
+  "Hands the batch to the least loaded subscriber of the stream, as only one
+   subscriber should process each segment. Returns false if every queue is full,
+   or if no subscriber has registered a queue. Publishers only short circuit
+   while queues are registered, and otherwise offer to their publication."
+  [^CopyOnWriteArrayList queues batch]
+  ;; reduce walks a snapshot of the list, as subscribers unregister concurrently
+  (let [^ManyToOneConcurrentArrayQueue best
+        (reduce (fn [^ManyToOneConcurrentArrayQueue best ^ManyToOneConcurrentArrayQueue q]
+                  (if (or (nil? best) (< (.size q) (.size best))) q best))
+                nil
+                queues)]
+    (boolean (and best (.offer best batch)))))
+
+(defn offer-barrier!
+  "Offers the barrier to each queue in queues, as every subscriber must receive
+   every barrier. Returns the queues that were full, so that the barrier can be
+   retried against only those queues."
+  [queues barrier]
+  (into []
+        (remove (fn [^ManyToOneConcurrentArrayQueue q]
+                  (.offer q barrier)))
+        queues))
+
+(defn available-fraction
+  "The free capacity of the least loaded queue, as a fraction of queue-capacity."
+  ^double [queues]
+  (reduce (fn [free ^ManyToOneConcurrentArrayQueue q]
+            (max free (/ (double (- queue-capacity (.size q))) queue-capacity)))
+          0.0
+          queues))
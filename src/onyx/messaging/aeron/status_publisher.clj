@@ -1,44 +1,41 @@
 (ns onyx.messaging.aeron.status-publisher
   (:require [onyx.messaging.protocols.status-publisher :as status-pub]
             [onyx.peer.constants :refer [UNALIGNED_SUBSCRIBER]]
-            [onyx.types :as t]
             [onyx.messaging.serialize :as sz]
             [onyx.compression.nippy :refer [messaging-compress messaging-decompress]]
             [onyx.messaging.aeron.utils :as autil :refer [action->kw stream-id heartbeat-stream-id]]
+            [onyx.messaging.aeron.client-pool :as pool]
             [taoensso.timbre :refer [debug info warn] :as timbre])
   (:import [org.agrona.concurrent UnsafeBuffer]
-           [org.agrona ErrorHandler]
-           [io.aeron Aeron Aeron$Context Publication]))
+           [io.aeron Aeron Publication]
+           [io.aeron.logbuffer BufferClaim]
+           [onyx.serialization HeartbeatEncoder ReadyReplyEncoder]))
 
-(deftype StatusPublisher [peer-config peer-id dst-peer-id site ^Aeron conn ^Publication pub 
+(deftype StatusPublisher [peer-config client-pool error-fn peer-id dst-peer-id site ^Publication pub 
+                          ^UnsafeBuffer control-buf ^HeartbeatEncoder heartbeat-encoder 
+                          ^ReadyReplyEncoder ready-reply-encoder ^BufferClaim claim
                           ^:unsynchronized-mutable blocked ^:unsynchronized-mutable completed
                           ^:unsynchronized-mutable short-id ^:unsynchronized-mutable session-id 
                           ^:unsynchronized-mutable heartbeat]
   status-pub/PStatusPublisher
   (start [this]
-    (let [media-driver-dir (:onyx.messaging.aeron/media-driver-dir peer-config)
-          status-error-handler (reify ErrorHandler
-                                 (onError [this x] 
-                                   (taoensso.timbre/warn x "Aeron status channel error")))
-          ctx (cond-> (Aeron$Context.)
-                error-handler (.errorHandler status-error-handler)
-                media-driver-dir (.aeronDirectoryName ^String media-driver-dir))
-          channel (autil/channel (:address site) (:port site))
-          conn (Aeron/connect ctx)
-          pub (.addPublication conn channel heartbeat-stream-id)
+    (let [channel (autil/dst-channel peer-config site)
+          conn (pool/lease! client-pool error-fn)
+          pub (.addPublication conn channel (autil/dst-heartbeat-stream-id peer-config site))
           initial-heartbeat (System/nanoTime)]
-      (StatusPublisher. peer-config peer-id dst-peer-id site conn pub 
-                        blocked completed nil nil initial-heartbeat)))
+      (StatusPublisher. peer-config client-pool error-fn peer-id dst-peer-id site pub 
+                        control-buf heartbeat-encoder ready-reply-encoder claim blocked completed nil nil initial-heartbeat)))
   (stop [this]
     (info "Closing status pub." (status-pub/info this))
-    (.close conn)
     (try
      (when pub (.close pub))
      (catch io.aeron.exceptions.RegistrationException re
        (info "Error closing publication from status publisher" re)))
-    (StatusPublisher. peer-config peer-id dst-peer-id site nil nil nil false false nil nil))
+    (when pub (pool/release! client-pool error-fn))
+    (StatusPublisher. peer-config client-pool error-fn peer-id dst-peer-id site nil 
+                      control-buf heartbeat-encoder ready-reply-encoder claim false false nil nil nil))
   (info [this]
-    (let [dst-channel (autil/channel (:address site) (:port site))] 
+    (let [dst-channel (autil/dst-channel peer-config site)] 
       {:type :status-publisher
        :src-peer-id peer-id
        :dst-peer-id dst-peer-id
@@ -84,21 +81,24 @@
     this)
   (offer-barrier-status! [this replica-version epoch opts]
     (if session-id 
-      (let [barrier-aligned (merge (t/heartbeat replica-version epoch peer-id
-                                                dst-peer-id session-id short-id) 
-                                   opts)
-            buf (sz/serialize barrier-aligned)
-            ret (.offer ^Publication pub buf 0 (.capacity buf))]
+      (let [ret (autil/offer-claimed! pub claim control-buf sz/heartbeat-length
+                                      (fn [buf offset]
+                                        (sz/encode-heartbeat! buf offset heartbeat-encoder replica-version epoch 
+                                                              peer-id dst-peer-id session-id short-id opts)))]
         (debug "Offered barrier status message:" 
-               [ret barrier-aligned :session-id (.sessionId pub) :dst-site site])
+               [ret replica-version epoch opts :session-id (.sessionId pub) :dst-site site])
         ret) 
       UNALIGNED_SUBSCRIBER))
   (offer-ready-reply! [this replica-version epoch]
-    (let [ready-reply (t/ready-reply replica-version peer-id dst-peer-id session-id short-id) 
-          buf (sz/serialize ready-reply)
-          ret (.offer ^Publication pub buf 0 (.capacity buf))] 
-      (debug "Offer ready reply!:" [ret ready-reply :session-id (.sessionId pub) :dst-site site])
+    (let [ret (autil/offer-claimed! pub claim control-buf sz/ready-reply-length
+                                    (fn [buf offset]
+                                      (sz/encode-ready-reply! buf offset ready-reply-encoder replica-version 
+                                                              peer-id dst-peer-id session-id short-id)))] 
+      (debug "Offer ready reply!:" [ret replica-version :session-id (.sessionId pub) :dst-site site])
       ret)))
 
-(defn new-status-publisher [peer-config peer-id src-peer-id site]
-  (->StatusPublisher peer-config peer-id src-peer-id site nil nil nil false false nil nil))
+(defn new-status-publisher [peer-config client-pool peer-id src-peer-id site]
+  (let [error-fn (fn [x] (warn x "Aeron status channel error"))] 
+    (->StatusPublisher peer-config client-pool error-fn peer-id src-peer-id site nil 
+                       (sz/control-buffer) (HeartbeatEncoder.) (ReadyReplyEncoder.) (BufferClaim.)
+                       false false nil nil nil)))
@@ -2,101 +2,182 @@
   (:require [onyx.messaging.protocols.subscriber :as sub]
             [onyx.messaging.protocols.status-publisher :as status-pub]
             [onyx.messaging.aeron.status-publisher :refer [new-status-publisher]]
+            [onyx.messaging.aeron.client-pool :as pool]
+            [onyx.messaging.aeron.frame-compression :as fc]
+            [onyx.messaging.chunking :as ch]
+            [onyx.messaging.aeron.ticket-counters :as tc]
+            [onyx.messaging.aeron.short-circuit :as sc]
             [onyx.messaging.common :as common]
-            [onyx.messaging.aeron.utils :as autil :refer [action->kw stream-id heartbeat-stream-id]]
+            [onyx.messaging.aeron.utils :as autil :refer [action->kw stream-id heartbeat-stream-id max-message-length]]
             [onyx.messaging.serialize :as sz]
             [onyx.compression.nippy :refer [messaging-compress messaging-decompress]]
             [onyx.static.default-vals :refer [arg-or-default]]
             [onyx.messaging.aeron.int2objectmap :refer [int2objectmap]]
+            [onyx.messaging.direct-buffer-input :refer [direct-buffer-input]]
+            [onyx.messaging.protocols.segment-codec :as codec]
+            [onyx.messaging.segment-codec]
             [onyx.messaging.aeron.utils :as autil]
             [onyx.static.util :refer [ms->ns]]
             [onyx.types]
             [taoensso.timbre :refer [debug info warn] :as timbre])
   (:import [java.util.concurrent.atomic AtomicLong]
            [org.agrona.concurrent UnsafeBuffer]
-           [org.agrona ErrorHandler]
-           [onyx.serialization MessageEncoder MessageDecoder MessageEncoder$SegmentsEncoder]
+           [org.agrona.collections Long2ObjectHashMap Int2IntHashMap]
+           [org.agrona.concurrent ManyToOneConcurrentArrayQueue]
+           [onyx.messaging.aeron.short_circuit ShortCircuitBarrier]
+           [onyx.serialization MessageEncoder MessageDecoder MessageEncoder$SegmentsEncoder BarrierDecoder]
            [onyx.messaging.aeron.int2objectmap CljInt2ObjectHashMap]
-           [io.aeron Aeron Aeron$Context Publication Subscription Image
-            ControlledFragmentAssembler UnavailableImageHandler
-            AvailableImageHandler] 
+           [onyx.messaging.direct_buffer_input DirectBufferDataInput]
+           [io.aeron Aeron Publication Subscription Image ControlledFragmentAssembler] 
            [io.aeron.logbuffer ControlledFragmentHandler ControlledFragmentHandler$Action]))
 
-(def fragment-limit-receiver 10000)
+(def max-fragment-limit 10000)
 
-(defn counters->counter [ticket-counters replica-version short-id session-id]
-  (-> ticket-counters
-      (get replica-version)
-      (get short-id)
-      (get session-id)))
+(def min-fragment-limit 16)
 
-;; TODO, faster lookup via int2objectmap
-(defn ^java.util.concurrent.atomic.AtomicLong lookup-ticket [ticket-counters replica-version short-id session-id]
-  (or (counters->counter @ticket-counters replica-version short-id session-id)
-      (-> ticket-counters
-          (swap! update-in 
-                 [replica-version short-id session-id]
-                 (fn [ticket]
-                   (or ticket (AtomicLong. -1))))
-          (counters->counter replica-version short-id session-id))))
+(defn next-fragment-limit
+  "Halves the fragment limit when a poll took longer than the latency target,
+   so that a poll never holds up the task for long, and doubles it when the
+   limit was reached before the batch was filled."
+  [limit n-fragments full? latency-ns target-ns]
+  (let [limit (long limit)]
+    (cond (> (long latency-ns) (long target-ns))
+          (max min-fragment-limit (quot limit 2))
+
+          (and (>= (long n-fragments) limit) (not full?))
+          (min max-fragment-limit (* 2 limit))
+
+          :else
+          limit)))
+
+(defn image-credit
+  "The number of segments each upstream image may add to a batch before
+   the other images have been read."
+  ^long [^long batch-size ^long n-images]
+  (if (> n-images 1)
+    (max 1 (quot batch-size n-images))
+    batch-size))
+
+;; Tickets are cached on the subscriber after the first lookup, so the shared
+;; counters are only consulted when a new source or replica version is seen
+(defn lookup-ticket ^AtomicLong 
+  [^Long2ObjectHashMap tickets ticket-counters replica-version short-id session-id]
+  (let [k (tc/ticket-key (long short-id) (long session-id))]
+    (or (.get tickets k)
+        (let [ticket (tc/lookup-ticket ticket-counters replica-version short-id session-id)]
+          (.put tickets k ticket)
+          ticket))))
 
 (defn assert-epoch-correct! [epoch message-epoch message]
   (when-not (= (inc epoch) message-epoch)
     (throw (ex-info "Unexpected barrier found. Possibly a misaligned subscription."
-                    {:message message
+                    {:message (str message)
                      :epoch epoch}))))
 
+(defprotocol PReceivedBarrier
+  (barrier-short-id [barrier])
+  (barrier-epoch [barrier])
+  (barrier-completed [barrier])
+  (recover-coordinates? [barrier])
+  (recover-coordinates [barrier]))
+
+(extend-protocol PReceivedBarrier
+  BarrierDecoder
+  (barrier-short-id [barrier] (.destId barrier))
+  (barrier-epoch [barrier] (.epoch barrier))
+  (barrier-completed [barrier] (.completed barrier))
+  (recover-coordinates? [barrier] (sz/flag->opt (.hasRecoverCoordinates barrier)))
+  (recover-coordinates [barrier] (sz/get-recover-coordinates barrier))
+
+  ShortCircuitBarrier
+  (barrier-short-id [barrier] (:short-id barrier))
+  (barrier-epoch [barrier] (:epoch barrier))
+  (barrier-completed [barrier] (sz/opt->flag (:opts barrier) :completed?))
+  (recover-coordinates? [barrier] (contains? (:opts barrier) :recover-coordinates))
+  (recover-coordinates [barrier] (:recover-coordinates (:opts barrier))))
+
+(defn poll-short-circuit
+  "Takes batches for replica-version from the short circuit queue into batch,
+   until batch-size segments have been read or a barrier is at the head of the
+   queue. Returns [batch barrier]. A barrier is only taken from the queue when no 
+   segments were read, mirroring the Aeron fragment handler."
+  [^ManyToOneConcurrentArrayQueue queue ^CljInt2ObjectHashMap short-id-status-pub replica-version batch-size]
+  (loop [batch nil]
+    (let [item (.peek queue)]
+      (cond (nil? item)
+            [batch nil]
+
+            (< (:replica-version item) replica-version)
+            (do (.poll queue)
+                (recur batch))
+
+            (> (:replica-version item) replica-version)
+            [batch nil]
+
+            :else
+            (let [spub (.valAt short-id-status-pub (:short-id item))]
+              (when spub (status-pub/set-heartbeat! spub))
+              (cond (not (instance? ShortCircuitBarrier item))
+                    (if (< (count batch) batch-size)
+                      (do (.poll queue)
+                          (recur (reduce conj! (or batch (transient [])) (:segments item))))
+                      [batch nil])
+
+                    (nil? spub)
+                    (do (.poll queue)
+                        (recur batch))
+
+                    (nil? batch)
+                    (do (.poll queue)
+                        [nil item])
+
+                    :else
+                    [batch nil]))))))
+
+(defn count-status-pubs [pred status-pubs]
+  (count (filter (comp pred val) status-pubs)))
+
 (defn invalid-replica-found! [replica-version message]
   (throw (ex-info "Shouldn't have received a message for this replica-version as we have not sent a ready message." 
                   {:replica-version replica-version 
                    :message message})))
 
-(defn unavailable-image [sub-info lost-sessions]
-  (reify UnavailableImageHandler
-    (onUnavailableImage [this image] 
-      (swap! lost-sessions conj (.sessionId image))
-      (debug "Lost sessions now" @lost-sessions sub-info)
-      (debug "Unavailable network image" (.position image) (.sessionId image) sub-info))))
-
-(defn available-image [sub-info]
-  (reify AvailableImageHandler
-    (onAvailableImage [this image] 
-      (debug "Available network image" (.position image) (.sessionId image) sub-info))))
-
 (deftype Subscriber 
-  [peer-id ticket-counters peer-config dst-task-id slot-id site batch-size ^AtomicLong read-bytes 
-   ^AtomicLong errors error ^bytes bs channel ^Aeron conn ^Subscription subscription lost-sessions
+  [peer-id ticket-counters ^Long2ObjectHashMap tickets peer-config client-pool dst-task-id slot-id site batch-size ^AtomicLong read-bytes 
+   ^AtomicLong errors error error-fn segment-codec ^DirectBufferDataInput input ^BarrierDecoder barrier-decoder 
+   decompressor chunk-assembler ^Int2IntHashMap credits-used ^long poll-target-ns short-circuit ^ManyToOneConcurrentArrayQueue sc-queue channel 
+   ^Subscription subscription ^Subscription ipc-subscription
    ^:unsynchronized-mutable sources         ^:unsynchronized-mutable short-id-status-pub
    ^:unsynchronized-mutable status-pubs     ^:unsynchronized-mutable ^ControlledFragmentAssembler assembler 
+   ^:unsynchronized-mutable ^ControlledFragmentAssembler ipc-assembler ^:unsynchronized-mutable ipc-first?
    ^:unsynchronized-mutable replica-version ^:unsynchronized-mutable epoch
-   ^:unsynchronized-mutable status          ^:unsynchronized-mutable batch]
+   ^:unsynchronized-mutable status          ^:unsynchronized-mutable batch
+   ;; upstream peers that are blocked on, or have completed, the current barrier
+   ^:unsynchronized-mutable ^long n-blocked ^:unsynchronized-mutable ^long n-completed
+   ;; receive sizing, adapted on each poll
+   ^:unsynchronized-mutable ^long fragment-limit ^:unsynchronized-mutable ^long credit
+   ^:unsynchronized-mutable credit-limited?]
   sub/Subscriber
   (start [this]
-    (let [error-handler (reify ErrorHandler
-                          (onError [this x] 
-                            (reset! error x)
-                            (.addAndGet errors 1)))
-          media-driver-dir (:onyx.messaging.aeron/media-driver-dir peer-config)
-          sinfo [dst-task-id slot-id site]
-          lost-sessions (atom #{})
-          ctx (cond-> (Aeron$Context.)
-                error-handler (.errorHandler error-handler)
-                media-driver-dir (.aeronDirectoryName ^String media-driver-dir)
-                true (.availableImageHandler (available-image sinfo))
-                true (.unavailableImageHandler (unavailable-image sinfo lost-sessions)))
-          conn (Aeron/connect ctx)
+    (let [conn (pool/lease! client-pool error-fn)
           channel (autil/channel peer-config)
           stream-id (stream-id dst-task-id slot-id site)
           sub (.addSubscription conn channel stream-id)
+          ;; publishers in other peer groups on the same media driver publish over IPC
+          ipc-sub (when (arg-or-default :onyx.messaging.aeron/allow-ipc? peer-config)
+                    (.addSubscription conn autil/ipc-channel stream-id))
           sources []
           short-id-status-pub (int2objectmap)
           status-pubs {}
           status {}
+          _ (when short-circuit 
+              (sc/register! short-circuit (sc/stream-key dst-task-id slot-id site) sc-queue))
           new-subscriber (sub/add-assembler 
-                          (Subscriber. peer-id ticket-counters peer-config dst-task-id
-                                       slot-id site batch-size read-bytes errors error bs channel
-                                       conn sub lost-sessions sources short-id-status-pub 
-                                       status-pubs nil nil nil status nil))]
+                          (Subscriber. peer-id ticket-counters tickets peer-config client-pool dst-task-id
+                                       slot-id site batch-size read-bytes errors error error-fn segment-codec input 
+                                       barrier-decoder decompressor chunk-assembler credits-used poll-target-ns short-circuit sc-queue 
+                                       channel sub ipc-sub sources short-id-status-pub status-pubs nil nil false 
+                                       nil nil status nil 0 0 max-fragment-limit batch-size false))]
       (info "Created subscriber" (sub/info new-subscriber))
       new-subscriber)) 
   (stop [this]
@@ -107,15 +188,20 @@
     (when subscription 
       (try
        (.close subscription)
+       (when ipc-subscription (.close ipc-subscription))
        (catch io.aeron.exceptions.RegistrationException re
          (info "Error stopping subscriber's subscription." re))))
-    (when conn (.close conn))
     (run! status-pub/stop (vals status-pubs))
-    (Subscriber. peer-id ticket-counters peer-config dst-task-id slot-id site
-                 batch-size read-bytes errors error bs nil nil nil nil nil nil nil 
-                 nil nil nil nil nil)) 
+    (when short-circuit
+      (sc/unregister! short-circuit (sc/stream-key dst-task-id slot-id site) sc-queue))
+    (when subscription (pool/release! client-pool error-fn))
+    (Subscriber. peer-id ticket-counters tickets peer-config client-pool dst-task-id slot-id site
+                 batch-size read-bytes errors error error-fn segment-codec input barrier-decoder decompressor 
+                 chunk-assembler credits-used poll-target-ns short-circuit sc-queue nil nil nil nil nil nil
+                 nil nil false nil nil nil nil 0 0 max-fragment-limit batch-size false)) 
   (add-assembler [this]
     (set! assembler (ControlledFragmentAssembler. this))
+    (set! ipc-assembler (ControlledFragmentAssembler. this))
     this)
   (info [this]
     {:subscription {:rv replica-version
@@ -124,13 +210,16 @@
                     :dst-task-id dst-task-id 
                     :slot-id slot-id 
                     :blocked? (sub/blocked? this)
+                    :fragment-limit fragment-limit
+                    :image-credit credit
                     :site site
                     :channel (autil/channel peer-config)
                     :channel-id (.channel subscription)
                     :registration-id (.registrationId subscription)
                     :stream-id (.streamId subscription)
                     :closed? (.isClosed subscription)
-                    :images (mapv autil/image->map (.images subscription))}
+                    :images (mapv autil/image->map (.images subscription))
+                    :ipc-images (some->> ipc-subscription .images (mapv autil/image->map))}
      :status-pubs (into {} (map (fn [[k v]] [k (status-pub/info v)]) status-pubs))})
   (equiv-meta [this sub-info]
     (and (= dst-task-id (:dst-task-id sub-info))
@@ -142,7 +231,11 @@
   (set-replica-version! [this new-replica-version]
     (run! status-pub/new-replica-version! (vals status-pubs))
     (set! replica-version new-replica-version)
+    (.clear tickets)
+    (ch/clear! chunk-assembler)
     (set! status {})
+    (set! n-blocked 0)
+    (set! n-completed 0)
     this)
   (recovered? [this]
     (:recovered? status))
@@ -150,21 +243,32 @@
     (:recover status))
   (unblock! [this]
     (run! (comp status-pub/unblock! val) status-pubs)
+    (set! n-blocked 0)
     this)
   (blocked? [this]
-    ;; TODO: precompute result whenever a status changes
-    (not (some (complement status-pub/blocked?) (vals status-pubs))))
+    (= n-blocked (count status-pubs)))
+  (barrier-pending? [this]
+    (and (pos? n-blocked) (= n-blocked (count status-pubs))))
   (completed? [this]
-    (not (some (complement status-pub/completed?) (vals status-pubs))))
+    (= n-completed (count status-pubs)))
   (received-barrier! [this barrier]
-    (when-let [status-pub (get short-id-status-pub (:short-id barrier))]
-      (assert-epoch-correct! epoch (:epoch barrier) barrier)
+    (when-let [status-pub (get short-id-status-pub (barrier-short-id barrier))]
+      (assert-epoch-correct! epoch (barrier-epoch barrier) barrier)
+      (when-not (status-pub/blocked? status-pub)
+        (set! n-blocked (inc n-blocked)))
       (status-pub/block! status-pub)
-      (when (contains? barrier :completed?) 
-        (status-pub/set-completed! status-pub (:completed? barrier)))
-      (when (contains? barrier :recover-coordinates)
+      (let [completed (barrier-completed barrier)]
+        (when-not (= completed sz/flag-absent) 
+          (let [prev-completed? (status-pub/completed? status-pub)
+                completed? (sz/flag->opt completed)]
+            (status-pub/set-completed! status-pub completed?)
+            (cond (and completed? (not prev-completed?))
+                  (set! n-completed (inc n-completed))
+                  (and prev-completed? (not completed?))
+                  (set! n-completed (dec n-completed))))))
+      (when (recover-coordinates? barrier)
         (let [recover (:recover status)
-              recover* (:recover-coordinates barrier)] 
+              recover* (recover-coordinates barrier)] 
           (when-not (or (nil? recover) (= recover* recover)) 
             (throw (ex-info "Two different subscribers sent differing recovery information."
                             {:recover1 recover :recover2 recover*
@@ -173,11 +277,50 @@
     this)
   (poll! [this]
     (when @error (throw @error))
-    (set! batch nil)
-    (->> (.controlledPoll ^Subscription subscription
-                          ^ControlledFragmentHandler assembler
-                          fragment-limit-receiver)
-         (.addAndGet read-bytes))
+    (let [[sc-batch barrier] (poll-short-circuit sc-queue short-id-status-pub replica-version batch-size)]
+      (set! batch sc-batch)
+      (if barrier
+        ;; as with a barrier read from the subscription, stop reading until the next poll
+        (sub/received-barrier! this barrier)
+        ;; only one subscription is read per poll, so that reading stops after a
+        ;; barrier. The subscription read first alternates to avoid starvation.
+        (let [start (System/nanoTime)
+              [first-sub first-assembler second-sub second-assembler] 
+              (if ipc-first?
+                [ipc-subscription ipc-assembler subscription assembler]
+                [subscription assembler ipc-subscription ipc-assembler])
+              read-subscriptions (fn [] 
+                                   (let [n-fragments (if first-sub 
+                                                       (.controlledPoll ^Subscription first-sub 
+                                                                        ^ControlledFragmentHandler first-assembler 
+                                                                        fragment-limit)
+                                                       0)]
+                                     (if (and (zero? n-fragments) second-sub)
+                                       (.controlledPoll ^Subscription second-sub 
+                                                        ^ControlledFragmentHandler second-assembler 
+                                                        fragment-limit)
+                                       n-fragments)))
+              n-images (cond-> (.imageCount subscription)
+                         ipc-subscription (+ (.imageCount ipc-subscription)))
+              blocked-before n-blocked
+              _ (.clear credits-used)
+              _ (set! credit-limited? false)
+              _ (set! credit (image-credit batch-size n-images))
+              n-fragments (long (read-subscriptions))
+              ;; images that used up their credit are read again when the
+              ;; others could not fill the batch, unless a barrier was read
+              n-fragments (if (and credit-limited? 
+                                   (= blocked-before n-blocked)
+                                   (< (count batch) batch-size))
+                            (do (set! credit batch-size)
+                                (+ n-fragments (long (read-subscriptions))))
+                            n-fragments)]
+          (set! fragment-limit (long (next-fragment-limit fragment-limit n-fragments 
+                                                          (>= (count batch) batch-size)
+                                                          (- (System/nanoTime) start)
+                                                          poll-target-ns)))
+          (when ipc-subscription (set! ipc-first? (not ipc-first?)))
+          (.addAndGet read-bytes n-fragments))))
     batch)
   (offer-barrier-status! [this peer-id opts]
     (let [status-pub (get status-pubs peer-id)
@@ -202,7 +345,7 @@
                           (assoc spubs 
                                  src-peer-id
                                  (->> (get peer-id->site src-peer-id)
-                                      (new-status-publisher peer-config peer-id src-peer-id)
+                                      (new-status-publisher peer-config client-pool peer-id src-peer-id)
                                       (status-pub/start))))
                         removed
                         add-peer-ids)
@@ -215,12 +358,14 @@
             short-id->status-pub)
       (set! short-id-status-pub short-id->status-pub)
       (set! status-pubs final)
+      (set! n-blocked (long (count-status-pubs status-pub/blocked? final)))
+      (set! n-completed (long (count-status-pubs status-pub/completed? final)))
       (set! sources sources*))
     this)
   ControlledFragmentHandler
   (onFragment [this buffer offset length header]
     (let [msg-type (sz/get-message-type buffer offset)]
-      (if (= msg-type sz/message-id)
+      (if (or (= msg-type sz/message-id) (= msg-type sz/compressed-message-id))
         ;; received a batch of messages
         (let [_ (when (nil? batch) (set! batch (transient [])))
               decoder (sz/wrap-message-decoder buffer (unchecked-add-int offset 1))
@@ -229,20 +374,34 @@
               _ (when-let [spub (.valAt ^CljInt2ObjectHashMap short-id-status-pub short-id)]
                   (status-pub/set-heartbeat! spub))
               ret (if (= rv-msg replica-version)
-                    (if (< (count batch) batch-size)
-                      (let [session-id (.sessionId header)
-                            ;; TODO: slow
-                            ticket (lookup-ticket ticket-counters replica-version short-id session-id) 
-                            ticket-val ^long (.get ticket)
-                            position (.position header)
-                            ticket? (and (< ticket-val position)
-                                         (.compareAndSet ticket ticket-val position))]
-                        (.addAndGet read-bytes length)
-                        (when ticket? (sz/into-segments! decoder bs batch))
-                        ControlledFragmentHandler$Action/CONTINUE)
+                    (let [session-id (.sessionId header)
+                          used (.get credits-used session-id)]
+                      (cond (>= (count batch) batch-size)
+                            ;; we've read a full batch worth
+                            ControlledFragmentHandler$Action/ABORT
+
+                            (>= used credit)
+                            ;; leave the rest of this image for the other images
+                            (do (set! credit-limited? true)
+                                ControlledFragmentHandler$Action/ABORT)
+
+                            :else
+                            (let [ticket (lookup-ticket tickets ticket-counters replica-version short-id session-id) 
+                                  ticket-val ^long (.get ticket)
+                                  position (.position header)
+                                  ticket? (and (< ticket-val position)
+                                               (.compareAndSet ticket ticket-val position))
+                                  n-before (count batch)]
+                              (.addAndGet read-bytes length)
+                              (when ticket? 
+                                (if (= msg-type sz/compressed-message-id)
+                                  (-> (fc/decompress-frame! decompressor buffer offset length)
+                                      (sz/wrap-message-decoder 0)
+                                      (sz/into-segments! segment-codec input batch))
+                                  (sz/into-segments! decoder segment-codec input batch))
+                                (.put credits-used session-id (int (+ used (- (count batch) n-before)))))
+                              ControlledFragmentHandler$Action/CONTINUE)))
 
-                      ;; we've read a full batch worth
-                      ControlledFragmentHandler$Action/ABORT) 
 
                     (if (< rv-msg replica-version)
                       ControlledFragmentHandler$Action/CONTINUE
@@ -250,22 +409,47 @@
           (debug [:read-subscriber (action->kw ret) channel dst-task-id])
           ret)
 
-        ;; TODO, SBE encode remaining message types
-        (let [message (sz/deserialize buffer (inc offset) (dec length))
-              rv-msg (:replica-version message)
-              short-id (:short-id message)
+        (let [rv-msg (sz/get-replica-version buffer (unchecked-add-int offset 1))
+              short-id (sz/get-dest-id buffer (unchecked-add-int offset 1) msg-type)
               ret (if (< rv-msg replica-version)
                     ControlledFragmentHandler$Action/CONTINUE
                     (if (> rv-msg replica-version)
                       ControlledFragmentHandler$Action/ABORT
                       (if-let [spub (.valAt ^CljInt2ObjectHashMap short-id-status-pub short-id)]
                         (do (status-pub/set-heartbeat! spub)
-                            (case (int (:type message))
+                            (case (int msg-type)
                               1 (if (nil? batch)
-                                  (do (sub/received-barrier! this message)
+                                  (do (->> (unchecked-add-int offset 1)
+                                           (sz/wrap-barrier-decoder barrier-decoder buffer)
+                                           (sub/received-barrier! this))
                                       ControlledFragmentHandler$Action/BREAK)
                                   ControlledFragmentHandler$Action/ABORT)
                               2 ControlledFragmentHandler$Action/CONTINUE
+                              5 (let [session-id (.sessionId header)]
+                                  (cond (zero? (ch/chunk-index buffer offset))
+                                        ;; the subscriber that claims the first chunk assembles the frame
+                                        (let [ticket (lookup-ticket tickets ticket-counters replica-version short-id session-id)
+                                              ticket-val ^long (.get ticket)
+                                              position (.position header)]
+                                          (ch/drop-frame! chunk-assembler session-id)
+                                          (when (and (< ticket-val position)
+                                                     (.compareAndSet ticket ticket-val position))
+                                            (ch/start-frame! chunk-assembler session-id buffer offset)
+                                            (ch/add-chunk! chunk-assembler session-id buffer offset length))
+                                          (.addAndGet read-bytes length)
+                                          ControlledFragmentHandler$Action/CONTINUE)
+
+                                        (and (ch/last-chunk? buffer offset)
+                                             (ch/assembling? chunk-assembler session-id)
+                                             (>= (count batch) batch-size))
+                                        ControlledFragmentHandler$Action/ABORT
+
+                                        :else
+                                        (do (.addAndGet read-bytes length)
+                                            (when-let [frame (ch/add-chunk! chunk-assembler session-id buffer offset length)]
+                                              (when (nil? batch) (set! batch (transient [])))
+                                              (sz/into-segments! (sz/wrap-message-decoder frame 1) segment-codec input batch))
+                                            ControlledFragmentHandler$Action/CONTINUE)))
                               3 (do (-> spub
                                         (status-pub/set-session-id! (.sessionId header))
                                         (status-pub/offer-ready-reply! replica-version epoch))
@@ -273,14 +457,23 @@
                               (throw (ex-info "Handler should never be here."
                                               {:replica-version replica-version
                                                :epoch epoch
-                                               :message message}))))
+                                               :message-type msg-type}))))
                         ControlledFragmentHandler$Action/CONTINUE)))]
-          (debug [:read-subscriber (action->kw ret) channel dst-task-id] (into {} message))
+          (debug [:read-subscriber (action->kw ret) channel dst-task-id] msg-type rv-msg short-id)
           ret)))))
 
-(defn new-subscription [peer-config monitoring peer-id ticket-counters sub-info]
-  (let [{:keys [dst-task-id slot-id site batch-size]} sub-info]
-    (->Subscriber peer-id ticket-counters peer-config dst-task-id slot-id site batch-size
-                  (:read-bytes monitoring) (:subscription-errors monitoring) (atom nil)
-                  (byte-array (autil/max-message-length)) nil nil nil 
-                  nil nil nil nil nil nil nil nil nil)))
+(defn new-subscription [peer-config client-pool short-circuit monitoring peer-id ticket-counters sub-info]
+  (let [{:keys [dst-task-id slot-id site batch-size]} sub-info
+        segment-codec (or (:segment-codec sub-info) (codec/build-codec {}))
+        errors ^AtomicLong (:subscription-errors monitoring)
+        error (atom nil)
+        error-fn (fn [x]
+                   (reset! error x)
+                   (.addAndGet errors 1))]
+    (->Subscriber peer-id ticket-counters (Long2ObjectHashMap.) peer-config client-pool dst-task-id slot-id site batch-size
+                  (:read-bytes monitoring) errors error error-fn segment-codec
+                  (direct-buffer-input) (BarrierDecoder.) (fc/new-frame-decompressor (max-message-length))
+                  (ch/new-chunk-assembler) (Int2IntHashMap. 0) 
+                  (* 1000 (long (arg-or-default :onyx.messaging/poll-target-latency-us peer-config)))
+                  short-circuit (sc/new-queue) nil nil nil
+                  nil nil nil nil nil false nil nil nil nil 0 0 max-fragment-limit batch-size false)))
@@ -0,0 +1,37 @@
+(ns ^:no-doc onyx.messaging.aeron.ticket-counters
+  "Tickets ensure that each message on a stream is only read by one of the
+   subscribers in the peer group that share the stream. Counters are keyed by
+   replica version, and then by short id and session id packed into a long."
+  (:import [java.util.concurrent ConcurrentHashMap]
+           [java.util.concurrent.atomic AtomicLong]
+           [java.util.function Function]))
+
+(def ^Function new-counters-fn
+  (reify Function
+    (apply [_ _] (ConcurrentHashMap.))))
+
+(def ^Function new-ticket-fn
+  (reify Function
+    (apply [_ _] (AtomicLong. -1))))
+
+(defn ticket-counters ^ConcurrentHashMap []
+  (ConcurrentHashMap.))
+
+(defn ticket-key ^long [^long short-id ^long session-id]
+  (bit-or (bit-shift-left short-id 32)
+          (bit-and session-id 0xFFFFFFFF)))
+
+(defn lookup-ticket ^AtomicLong [^ConcurrentHashMap counters ^long replica-version ^long short-id ^long session-id]
+  (let [^ConcurrentHashMap rv-counters (.computeIfAbsent counters replica-version new-counters-fn)]
+    (.computeIfAbsent rv-counters (ticket-key short-id session-id) new-ticket-fn)))
+
+(defn counters->map [^ConcurrentHashMap counters]
+  (into {}
+        (map (fn [[replica-version rv-counters]]
+               [replica-version
+                (into {}
+                      (map (fn [[k ^AtomicLong ticket]]
+                             [[(bit-shift-right (long k) 32) (bit-and (long k) 0xFFFFFFFF)]
+                              (.get ticket)]))
+                      rv-counters)]))
+        counters))
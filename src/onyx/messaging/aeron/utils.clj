@@ -1,8 +1,11 @@
 (ns onyx.messaging.aeron.utils
-  (:require [onyx.messaging.common :refer [bind-addr bind-port]])
+  (:require [onyx.messaging.common :refer [bind-addr bind-port external-addr]]
+            [onyx.static.default-vals :refer [arg-or-default]])
   (:import [io.aeron.logbuffer ControlledFragmentHandler$Action]
            [io.aeron.driver Configuration]
-           [io.aeron Subscription Image]))
+           [io.aeron CommonContext Publication Subscription Image]
+           [io.aeron.logbuffer BufferClaim]
+           [org.agrona.concurrent UnsafeBuffer]))
 
 (defn action->kw [action]
   (cond (= action ControlledFragmentHandler$Action/CONTINUE)
@@ -27,6 +30,45 @@
   ([peer-config]
    (channel (bind-addr peer-config) (bind-port peer-config))))
 
+;; Peers on the same host that share a media driver communicate over IPC,
+;; avoiding the UDP stack and its loss and retransmit handling.
+(def ipc-channel "aeron:ipc")
+
+(defn media-driver-dir [peer-config]
+  (or (:onyx.messaging.aeron/media-driver-dir peer-config)
+      (System/getProperty CommonContext/AERON_DIR_PROP_NAME CommonContext/AERON_DIR_PROP_DEFAULT)))
+
+(defn same-driver? [peer-config site]
+  (and (arg-or-default :onyx.messaging.aeron/allow-ipc? peer-config)
+       (= (:address site) (external-addr peer-config))
+       (= (:aeron/media-driver-dir site) (media-driver-dir peer-config))))
+
+;; The IPC channel is shared by every peer group on the media driver, so each
+;; group receives heartbeats on its own stream
+(defn ipc-heartbeat-stream-id [site]
+  (hash [:heartbeat (:address site) (:port site)]))
+
+(defn local-ipc-heartbeat-stream-id [peer-config]
+  (ipc-heartbeat-stream-id {:address (external-addr peer-config)
+                            :port (bind-port peer-config)}))
+
+(defn dst-channel
+  "Channel used to publish to a peer group at site."
+  [peer-config site]
+  (if (same-driver? peer-config site)
+    ipc-channel
+    (channel (:address site) (:port site))))
+
+(defn dst-heartbeat-stream-id [peer-config site]
+  (if (same-driver? peer-config site)
+    (ipc-heartbeat-stream-id site)
+    heartbeat-stream-id))
+
+;; Sites in the replica also carry the resources assigned to the peer
+(defn same-site? [site other-site]
+  (and (= (:address site) (:address other-site))
+       (= (:port site) (:port other-site))))
+
 (defn image->map [^Image image]
   {:pos (.position image) 
    :term-id (.initialTermId image)
@@ -42,3 +84,23 @@
   (/ (Integer/parseInt (or (System/getProperty term-buffer-prop-name) 
                            (str (Configuration/TERM_BUFFER_LENGTH_DEFAULT))))
      8))
+
+(defn offer-claimed!
+  "Encodes a frame of length bytes straight into the publication's term buffer,
+   by calling encode-fn with the claimed buffer and offset. Frames longer than
+   the max payload length would be fragmented and can't be claimed, so they are
+   encoded into fallback-buf and offered. Returns the publication result."
+  [^Publication pub ^BufferClaim claim ^UnsafeBuffer fallback-buf length encode-fn]
+  (let [length (int length)]
+    (if (<= length (.maxPayloadLength pub))
+      (let [ret (.tryClaim pub length claim)]
+        (when (pos? ret)
+          (try
+           (encode-fn (.buffer claim) (.offset claim))
+           (.commit claim)
+           (catch Throwable t
+             (.abort claim)
+             (throw t))))
+        ret)
+      (do (encode-fn fallback-buf 0)
+          (.offer pub fallback-buf 0 length)))))
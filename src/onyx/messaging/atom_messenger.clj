@@ -110,6 +110,13 @@
       [message]
       []))
 
+  (poll-heartbeats [messenger]
+    messenger)
+
+  ;; batches are never accumulated over several polls
+  (barrier-pending? [messenger]
+    true)
+
   (offer-barrier [messenger publication]
     (onyx.messaging.protocols.messenger/offer-barrier messenger publication {}))
 
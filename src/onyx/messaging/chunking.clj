@@ -0,0 +1,167 @@
+(ns ^:no-doc onyx.messaging.chunking
+  "Segments too large for a single frame are encoded alone into a Message frame
+   in a growable buffer, and the frame is sent as a sequence of chunk frames. The
+   subscriber that claims the ticket for the first chunk reassembles the frame, and
+   decodes it as though it had been received whole. Term buffers can then stay
+   small, while the occasional large segment still gets through.
+
+   Chunk frame layout:
+   [chunk-id][replica version, int64 LE][dest id, uint16 LE][chunk index, int32 LE]
+   [chunk count, int32 LE][frame length, int32 LE][chunk bytes]"
+  (:require [onyx.messaging.serialize :as sz]
+            [onyx.messaging.protocols.publisher :as pub])
+  (:import [org.agrona MutableDirectBuffer DirectBuffer ExpandableArrayBuffer]
+           [org.agrona.concurrent UnsafeBuffer]
+           [org.agrona.collections Int2ObjectHashMap]
+           [java.nio ByteOrder]
+           [onyx.serialization MessageEncoder]))
+
+(def ^ByteOrder byte-order ByteOrder/LITTLE_ENDIAN)
+
+(def replica-version-offset 1)
+(def dest-id-offset 9)
+(def chunk-index-offset 11)
+(def chunk-count-offset 15)
+(def frame-length-offset 19)
+(def chunk-header-length 23)
+
+(defn chunk-index ^long [^DirectBuffer buf offset]
+  (.getInt buf (int (+ (long offset) chunk-index-offset)) byte-order))
+
+(defn chunk-count ^long [^DirectBuffer buf offset]
+  (.getInt buf (int (+ (long offset) chunk-count-offset)) byte-order))
+
+(defn frame-length ^long [^DirectBuffer buf offset]
+  (.getInt buf (int (+ (long offset) frame-length-offset)) byte-order))
+
+(defn last-chunk? [buf offset]
+  (= (chunk-index buf offset) (dec (chunk-count buf offset))))
+
+(defn encode-chunk!
+  "Encodes chunk index of frame into buf at offset. Returns the chunk frame length."
+  [^MutableDirectBuffer buf offset ^DirectBuffer frame frame-length replica-version
+   short-id index n-chunks chunk-bytes]
+  (let [offset (long offset)
+        chunk-bytes (long chunk-bytes)
+        src-offset (* (long index) chunk-bytes)
+        length (min chunk-bytes (- (long frame-length) src-offset))]
+    (sz/put-message-type buf offset sz/chunk-id)
+    (.putLong buf (int (+ offset replica-version-offset)) (long replica-version) byte-order)
+    (.putShort buf (int (+ offset dest-id-offset)) (unchecked-short short-id) byte-order)
+    (.putInt buf (int (+ offset chunk-index-offset)) (int index) byte-order)
+    (.putInt buf (int (+ offset chunk-count-offset)) (int n-chunks) byte-order)
+    (.putInt buf (int (+ offset frame-length-offset)) (int frame-length) byte-order)
+    (.putBytes buf (int (+ offset chunk-header-length)) frame (int src-offset) (int length))
+    (+ chunk-header-length length)))
+
+(defn encode-large-frame!
+  "Encodes segment alone into a Message frame, growing frame-buf until it fits.
+   Returns the buffer holding the frame, and the frame length."
+  [^UnsafeBuffer frame-buf segment-codec output replica-version short-id segment]
+  (loop [^UnsafeBuffer buf frame-buf]
+    (let [encoder (-> (sz/wrap-message-encoder buf 1)
+                      (.replicaVersion replica-version)
+                      (.destId short-id))
+          _ (sz/put-message-type buf 0 sz/message-id)
+          encoded (try
+                   (sz/encode-segments! encoder segment-codec output [segment] 0 (.capacity buf) 1)
+                   (catch clojure.lang.ExceptionInfo _
+                     0))]
+      (if (pos? (long encoded))
+        [buf (inc (.encodedLength encoder))]
+        (recur (UnsafeBuffer. (byte-array (* 2 (.capacity buf)))))))))
+
+(defprotocol PChunkedSender
+  (offer-chunked! [this replica-version epoch segment-codec output segment publisher]
+    "Offers the chunks of a segment that does not fit in a frame. Progress is kept
+     when the publication back pressures, so that the next call for the same segment
+     and publisher resumes with the chunk that was not sent. Returns 1 once every
+     chunk has been sent, or 0."))
+
+(deftype ChunkedSender [^UnsafeBuffer chunk-buf ^long max-length
+                        ^:unsynchronized-mutable ^UnsafeBuffer frame-buf
+                        ^:unsynchronized-mutable ^long frame-length
+                        ^:unsynchronized-mutable ^long next-chunk
+                        ^:unsynchronized-mutable segment
+                        ^:unsynchronized-mutable publisher]
+  PChunkedSender
+  (offer-chunked! [this replica-version epoch segment-codec output seg pub]
+    (when-not (and (identical? seg segment) (identical? pub publisher))
+      (let [[buf length] (encode-large-frame! frame-buf segment-codec output replica-version
+                                              (pub/short-id pub) seg)]
+        (set! frame-buf buf)
+        (set! frame-length (long length))
+        (set! next-chunk 0)
+        (set! segment seg)
+        (set! publisher pub)))
+    (let [chunk-bytes (- max-length chunk-header-length)
+          n-chunks (quot (+ frame-length (dec chunk-bytes)) chunk-bytes)
+          short-id (pub/short-id pub)
+          frame frame-buf
+          length frame-length]
+      (loop [i next-chunk]
+        (if (< i n-chunks)
+          (let [chunk-length (+ chunk-header-length (min chunk-bytes (- length (* i chunk-bytes))))
+                ret (pub/offer-claimed! pub chunk-buf chunk-length
+                                        (fn [buf offset]
+                                          (encode-chunk! buf offset frame length replica-version
+                                                         short-id i n-chunks chunk-bytes))
+                                        epoch)]
+            (if (pos? (long ret))
+              (recur (inc i))
+              (do (set! next-chunk i)
+                  0)))
+          (do (set! segment nil)
+              (set! publisher nil)
+              1))))))
+
+(defn new-chunked-sender [max-length]
+  (->ChunkedSender (UnsafeBuffer. (byte-array max-length)) max-length
+                   (UnsafeBuffer. (byte-array (* 2 max-length))) 0 0 nil nil))
+
+(defprotocol PChunkAssembler
+  (add-chunk! [this session-id buf offset length]
+    "Adds a chunk frame to the frame being assembled for session-id. Returns the
+     assembled Message frame once its last chunk has been added, or nil.")
+  (start-frame! [this session-id buf offset])
+  (assembling? [this session-id])
+  (drop-frame! [this session-id])
+  (clear! [this]))
+
+;; Assemblies are [buffer next-chunk-index] pairs
+(deftype ChunkAssembler [^Int2ObjectHashMap assemblies]
+  PChunkAssembler
+  (start-frame! [this session-id buf offset]
+    (.put assemblies (int session-id)
+          (object-array [(ExpandableArrayBuffer. (int (frame-length buf offset))) 0])))
+  (assembling? [this session-id]
+    (.containsKey assemblies (int session-id)))
+  (add-chunk! [this session-id buf offset length]
+    (let [^objects assembly (.get assemblies (int session-id))
+          index (chunk-index buf offset)
+          n-chunks (chunk-count buf offset)]
+      (if (and assembly (= index (long (aget assembly 1))))
+        (let [^ExpandableArrayBuffer frame (aget assembly 0)
+              chunk-bytes (- (long length) chunk-header-length)
+              data-offset (+ (long offset) chunk-header-length)
+              ;; every chunk but the last is full, and the last ends the frame
+              dst-offset (if (= index (dec n-chunks))
+                           (- (frame-length buf offset) chunk-bytes)
+                           (* index chunk-bytes))]
+          (.putBytes frame (int dst-offset) ^DirectBuffer buf (int data-offset) (int chunk-bytes))
+          (if (= index (dec n-chunks))
+            (do (.remove assemblies (int session-id))
+                (UnsafeBuffer. (.byteArray frame) 0 (int (frame-length buf offset))))
+            (do (aset assembly 1 (inc index))
+                nil)))
+        ;; chunks out of sequence belong to a frame whose first chunks were lost or
+        ;; were claimed by another subscriber
+        (do (.remove assemblies (int session-id))
+            nil))))
+  (drop-frame! [this session-id]
+    (.remove assemblies (int session-id)))
+  (clear! [this]
+    (.clear assemblies)))
+
+(defn new-chunk-assembler []
+  (->ChunkAssembler (Int2ObjectHashMap.)))
@@ -0,0 +1,100 @@
+(ns ^:no-doc onyx.messaging.direct-buffer-input
+  "A reusable java.io.DataInput over a region of an Agrona DirectBuffer.
+   Allows nippy to thaw segments directly from the Aeron term buffer
+   without first copying them into a byte array."
+  (:import [org.agrona DirectBuffer]
+           [java.io DataInput DataInputStream EOFException]
+           [java.nio ByteOrder]))
+
+(defprotocol PDirectBufferInput
+  (wrap! [this buffer offset length])
+  (position [this]))
+
+;; DataInput is big endian, whereas SBE fields are little endian
+(def ^ByteOrder byte-order ByteOrder/BIG_ENDIAN)
+
+(deftype DirectBufferDataInput [^:unsynchronized-mutable ^DirectBuffer buffer
+                                ^:unsynchronized-mutable ^long pos
+                                ^:unsynchronized-mutable ^long limit]
+  PDirectBufferInput
+  (wrap! [this buf offset length]
+    (set! buffer buf)
+    (set! pos (long offset))
+    (set! limit (+ (long offset) (long length)))
+    this)
+  (position [this] pos)
+
+  DataInput
+  (readFully [this bs]
+    (.readFully this bs 0 (alength ^bytes bs)))
+  (readFully [this bs off len]
+    (let [new-pos (+ pos len)]
+      (when (> new-pos limit)
+        (throw (EOFException.)))
+      (.getBytes buffer (int pos) ^bytes bs (int off) (int len))
+      (set! pos new-pos)))
+  (skipBytes [this n]
+    (let [skipped (min n (- limit pos))]
+      (set! pos (+ pos skipped))
+      (int skipped)))
+  (readBoolean [this]
+    (not (zero? (.readByte this))))
+  (readByte [this]
+    (when (>= pos limit)
+      (throw (EOFException.)))
+    (let [v (.getByte buffer (int pos))]
+      (set! pos (inc pos))
+      v))
+  (readUnsignedByte [this]
+    (int (bit-and (long (.readByte this)) 0xFF)))
+  (readShort [this]
+    (when (> (+ pos 2) limit)
+      (throw (EOFException.)))
+    (let [v (.getShort buffer (int pos) byte-order)]
+      (set! pos (+ pos 2))
+      v))
+  (readUnsignedShort [this]
+    (int (bit-and (long (.readShort this)) 0xFFFF)))
+  (readChar [this]
+    (when (> (+ pos 2) limit)
+      (throw (EOFException.)))
+    (let [v (.getChar buffer (int pos) byte-order)]
+      (set! pos (+ pos 2))
+      v))
+  (readInt [this]
+    (when (> (+ pos 4) limit)
+      (throw (EOFException.)))
+    (let [v (.getInt buffer (int pos) byte-order)]
+      (set! pos (+ pos 4))
+      v))
+  (readLong [this]
+    (when (> (+ pos 8) limit)
+      (throw (EOFException.)))
+    (let [v (.getLong buffer (int pos) byte-order)]
+      (set! pos (+ pos 8))
+      v))
+  (readFloat [this]
+    (Float/intBitsToFloat (.readInt this)))
+  (readDouble [this]
+    (Double/longBitsToDouble (.readLong this)))
+  (readLine [this]
+    ;; as DataInputStream/readLine: bytes are read as chars up to \n, \r or
+    ;; \r\n, and nil is returned at the end of the input
+    (when (< pos limit)
+      (let [sb (StringBuilder.)]
+        (loop []
+          (when (< pos limit)
+            (let [c (long (.getByte buffer (int pos)))]
+              (set! pos (inc pos))
+              (case c
+                10 nil
+                13 (when (and (< pos limit) (== 10 (.getByte buffer (int pos))))
+                     (set! pos (inc pos)))
+                (do (.append sb (char (bit-and c 0xFF)))
+                    (recur))))))
+        (.toString sb))))
+  (readUTF [this]
+    (DataInputStream/readUTF this)))
+
+(defn direct-buffer-input []
+  (->DirectBufferDataInput nil 0 0))
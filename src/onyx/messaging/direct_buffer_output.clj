@@ -0,0 +1,84 @@
+(ns ^:no-doc onyx.messaging.direct-buffer-output
+  "A reusable java.io.DataOutput over a region of an Agrona MutableDirectBuffer.
+   Allows nippy to freeze segments straight into a publication buffer
+   without first allocating a byte array per segment."
+  (:import [org.agrona MutableDirectBuffer]
+           [java.io DataOutput DataOutputStream ByteArrayOutputStream]
+           [java.nio ByteOrder BufferOverflowException]))
+
+(defprotocol PDirectBufferOutput
+  (wrap! [this buffer offset limit])
+  (position [this])
+  (buffer [this]))
+
+;; DataOutput is big endian, whereas SBE fields are little endian
+(def ^ByteOrder byte-order ByteOrder/BIG_ENDIAN)
+
+(deftype DirectBufferDataOutput [^:unsynchronized-mutable ^MutableDirectBuffer buffer
+                                 ^:unsynchronized-mutable ^long pos
+                                 ^:unsynchronized-mutable ^long limit]
+  PDirectBufferOutput
+  (wrap! [this buf offset lim]
+    (set! buffer buf)
+    (set! pos (long offset))
+    (set! limit (long lim))
+    this)
+  (position [this] pos)
+  (buffer [this] buffer)
+
+  DataOutput
+  (^void write [this ^int b]
+    (.writeByte this b))
+  (^void write [this ^bytes bs]
+    (.write this bs 0 (alength bs)))
+  (^void write [this ^bytes bs ^int off ^int len]
+    (let [new-pos (+ pos len)]
+      (when (> new-pos limit)
+        (throw (BufferOverflowException.)))
+      (.putBytes buffer (int pos) bs off len)
+      (set! pos new-pos)))
+  (writeBoolean [this v]
+    (.writeByte this (if v 1 0)))
+  (writeByte [this v]
+    (when (>= pos limit)
+      (throw (BufferOverflowException.)))
+    (.putByte buffer (int pos) (unchecked-byte v))
+    (set! pos (inc pos)))
+  (writeShort [this v]
+    (when (> (+ pos 2) limit)
+      (throw (BufferOverflowException.)))
+    (.putShort buffer (int pos) (unchecked-short v) byte-order)
+    (set! pos (+ pos 2)))
+  (writeChar [this v]
+    (when (> (+ pos 2) limit)
+      (throw (BufferOverflowException.)))
+    (.putChar buffer (int pos) (unchecked-char v) byte-order)
+    (set! pos (+ pos 2)))
+  (writeInt [this v]
+    (when (> (+ pos 4) limit)
+      (throw (BufferOverflowException.)))
+    (.putInt buffer (int pos) v byte-order)
+    (set! pos (+ pos 4)))
+  (writeLong [this v]
+    (when (> (+ pos 8) limit)
+      (throw (BufferOverflowException.)))
+    (.putLong buffer (int pos) v byte-order)
+    (set! pos (+ pos 8)))
+  (writeFloat [this v]
+    (.writeInt this (Float/floatToIntBits v)))
+  (writeDouble [this v]
+    (.writeLong this (Double/doubleToLongBits v)))
+  (writeBytes [this s]
+    (dotimes [i (.length s)]
+      (.writeByte this (int (.charAt s i)))))
+  (writeChars [this s]
+    (dotimes [i (.length s)]
+      (.writeChar this (int (.charAt s i)))))
+  (writeUTF [this s]
+    ;; rarely used, so lean on DataOutputStream for the modified UTF-8 encoding
+    (let [baos (ByteArrayOutputStream.)]
+      (.writeUTF (DataOutputStream. baos) s)
+      (.write this (.toByteArray baos)))))
+
+(defn direct-buffer-output []
+  (->DirectBufferDataOutput nil 0 0))
@@ -0,0 +1,80 @@
+(ns ^:no-doc onyx.messaging.encoding-cache
+  "Segments routed to several publishers in a batch, e.g. via :flow/to :all,
+   are encoded once per codec. The encoded bytes are copied out of the frame
+   the first time, and written straight into the frames for the other publishers."
+  (:require [onyx.messaging.protocols.segment-codec :as codec]
+            [onyx.messaging.direct-buffer-output :as dbo])
+  (:import [java.util IdentityHashMap]
+           [java.util.concurrent.atomic AtomicLong]
+           [java.io DataOutput]
+           [org.agrona MutableDirectBuffer]))
+
+(defprotocol PEncodingCache
+  (fan-out! [this segment] "Marks segment as routed to more than one publisher in this batch.")
+  (fanned-out? [this segment])
+  (lookup [this segment-codec segment])
+  (store! [this segment-codec segment bs])
+  (take-marks! [this] 
+    "Returns the marks and encoded bytes of the batch that was just prepared,
+     and starts a new batch. Batches may be written after later batches are
+     prepared, so each batch keeps its own marks.")
+  (use-marks! [this marks] "Uses the marks of a prepared batch while it is written.")
+  (clear! [this]))
+
+;; Entries are [codec bytes] pairs, or nil for segments that are routed more
+;; than once but have not been encoded yet. entries is nil until a segment in
+;; the batch is fanned out.
+(deftype EncodingCache [^:unsynchronized-mutable ^IdentityHashMap entries 
+                        ^AtomicLong hits ^AtomicLong misses]
+  PEncodingCache
+  (fan-out! [this segment]
+    (when (nil? entries)
+      (set! entries (IdentityHashMap.)))
+    (.put entries segment nil))
+  (fanned-out? [this segment]
+    (boolean (and entries (.containsKey entries segment))))
+  (lookup [this segment-codec segment]
+    (let [^objects entry (.get entries segment)]
+      (if (and entry (identical? segment-codec (aget entry 0)))
+        (do (when hits (.incrementAndGet hits))
+            (aget entry 1))
+        (do (when misses (.incrementAndGet misses))
+            nil))))
+  (store! [this segment-codec segment bs]
+    (.put entries segment (object-array [segment-codec bs])))
+  (take-marks! [this]
+    (let [marks entries]
+      (set! entries nil)
+      marks))
+  (use-marks! [this marks]
+    (set! entries marks))
+  (clear! [this]
+    (set! entries nil)))
+
+(defn new-encoding-cache [monitoring]
+  (->EncodingCache nil
+                   (:serialization-cache-hits monitoring)
+                   (:serialization-cache-misses monitoring)))
+
+(defn copy-encoded ^bytes [output start]
+  (let [^MutableDirectBuffer buf (dbo/buffer output)
+        start (long start)
+        bs (byte-array (- (long (dbo/position output)) start))]
+    (.getBytes buf (int start) bs)
+    bs))
+
+(deftype CachingCodec [segment-codec cache]
+  codec/SegmentCodec
+  (encode! [this data-output segment]
+    (if (fanned-out? cache segment)
+      (if-let [bs (lookup cache segment-codec segment)]
+        (.write ^DataOutput data-output ^bytes bs)
+        (let [start (dbo/position data-output)]
+          (codec/encode! segment-codec data-output segment)
+          (store! cache segment-codec segment (copy-encoded data-output start))))
+      (codec/encode! segment-codec data-output segment)))
+  (decode [this data-input]
+    (codec/decode segment-codec data-input)))
+
+(defn caching-codec [cache segment-codec]
+  (->CachingCodec segment-codec cache))
@@ -0,0 +1,99 @@
+(ns ^:no-doc onyx.messaging.load-balance
+  "Chooses the publisher that each segment sent to an ungrouped task is
+   offered to, as selected by the task's :onyx/load-balance."
+  (:require [onyx.messaging.protocols.publisher :as pub])
+  (:import [java.util IdentityHashMap]
+           [java.util.concurrent ThreadLocalRandom]
+           [com.codahale.metrics Histogram]))
+
+(defprotocol PLoadBalancer
+  (choose [this publishers] "Chooses one of a downstream task's publishers for a segment.")
+  (next-batch! [this] "Records the skew of the previous batch, and clears its assignments."))
+
+(defn assigned ^long [^IdentityHashMap assignments pub]
+  (let [^longs n (.get assignments pub)]
+    (if n (aget n 0) 0)))
+
+(defn assign! [^IdentityHashMap assignments ^IdentityHashMap tasks publishers pub]
+  (let [^longs n (.get assignments pub)]
+    (if n
+      (aset n 0 (inc (aget n 0)))
+      (.put assignments pub (doto (long-array 1) (aset 0 1))))
+    (.put tasks publishers true)
+    pub))
+
+(defn skew-percent
+  "The difference between the segments assigned to the busiest and the idlest
+   publisher, as a percentage of the segments assigned to the task."
+  [assignments publishers]
+  (let [counts (map #(assigned assignments %) publishers)
+        total (reduce + counts)]
+    (if (zero? total)
+      0
+      (quot (* 100 (- (apply max counts) (apply min counts))) total))))
+
+(defn record-skew! [^IdentityHashMap assignments ^IdentityHashMap tasks ^Histogram skew]
+  (when skew
+    (run! (fn [publishers]
+            (when (> (count publishers) 1)
+              (.update skew (long (skew-percent assignments publishers)))))
+          (.keySet tasks)))
+  (.clear assignments)
+  (.clear tasks))
+
+(defn random-index ^long [^long n]
+  (.nextInt (ThreadLocalRandom/current) (int n)))
+
+;; The default balancer only tracks assignments when the skew histogram is
+;; registered, so that it otherwise costs no more than a random nth
+(deftype RandomBalancer [^IdentityHashMap assignments ^IdentityHashMap tasks skew]
+  PLoadBalancer
+  (choose [this publishers]
+    (let [pub (nth publishers (random-index (count publishers)))]
+      (if skew
+        (assign! assignments tasks publishers pub)
+        pub)))
+  (next-batch! [this]
+    (when skew
+      (record-skew! assignments tasks skew))))
+
+(defn window-score 
+  "A publisher's available window, shared by the segments already assigned to
+   it in this batch. Windows are read once per batch."
+  ^double [^IdentityHashMap windows assignments pub]
+  (let [window (or (.get windows pub)
+                   (let [w (pub/available-window pub)]
+                     (.put windows pub w)
+                     w))]
+    (/ (double window) (inc (assigned assignments pub)))))
+
+;; Picks the better of two random publishers, which spreads load nearly as
+;; well as scoring every publisher, and doesn't send every segment in a batch
+;; to the one publisher with the largest window
+(deftype AvailableWindowBalancer [^IdentityHashMap assignments ^IdentityHashMap tasks 
+                                  ^IdentityHashMap windows skew]
+  PLoadBalancer
+  (choose [this publishers]
+    (let [n (count publishers)]
+      (if (= n 1)
+        (assign! assignments tasks publishers (nth publishers 0))
+        (let [a (random-index n)
+              b (let [b (random-index (dec n))]
+                  (if (>= b a) (inc b) b))
+              pub-a (nth publishers a)
+              pub-b (nth publishers b)]
+          (assign! assignments tasks publishers
+                   (if (>= (window-score windows assignments pub-a)
+                           (window-score windows assignments pub-b))
+                     pub-a
+                     pub-b))))))
+  (next-batch! [this]
+    (.clear windows)
+    (record-skew! assignments tasks skew)))
+
+(defn new-load-balancer [strategy monitoring]
+  (let [skew (:load-balance-skew-percent monitoring)]
+    (case strategy
+      :random (->RandomBalancer (IdentityHashMap.) (IdentityHashMap.) skew)
+      :available-window (->AvailableWindowBalancer (IdentityHashMap.) (IdentityHashMap.) 
+                                                   (IdentityHashMap.) skew))))
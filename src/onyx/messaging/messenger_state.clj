@@ -4,6 +4,8 @@
             [onyx.scheduling.common-task-scheduler :as cts]
             [onyx.log.commands.common :as common]
             [onyx.messaging.protocols.messenger :as m]
+            [onyx.messaging.protocols.segment-codec :as codec]
+            [onyx.messaging.segment-codec]
             [onyx.extensions :as extensions]
             [taoensso.timbre :refer [info warn]]
             [onyx.static.planning :as planning]
@@ -57,6 +59,7 @@
                                                       (:src-peer-id k))})
                                     sources-peers)
                      :batch-size (:onyx/batch-size task-map)
+                     :segment-codec (codec/build-codec task-map)
                      :job-id job-id
                      ;; move dst task id to only task-id
                      :dst-task-id [job-id this-task-id]
@@ -9,6 +9,8 @@
   (set-replica-version! [this new-replica-version])
   (set-endpoint-peers! [this new-peers])
   (min-endpoint-epoch [this])
+  (min-reported-epoch [this])
+  (checkpointing? [this])
   (timed-out-subscribers [this])
   (liveness [this])
   (poll! [this]))
@@ -31,6 +31,7 @@
   (task->publishers [messenger dst-task-id])
   (subscriber [messenger])
   (poll [messenger])
+  (barrier-pending? [messenger])
   (poll-heartbeats [messenger])
   (offer-heartbeats [messenger])
   (offer-barrier [messenger publication] [messenger publication barrier-opts])
@@ -9,6 +9,10 @@
   (start [this])
   (stop [this])
   (offer! [this buf length endpoint-epoch])
+  (offer-claimed! [this fallback-buf length encode-fn endpoint-epoch])
+  (short-circuit? [this])
+  (available-window [this] "The fraction of the publication window that can be offered without back pressure.")
+  (offer-short-circuit! [this item endpoint-epoch])
   (set-replica-version! [this new-replica-version])
   (set-epoch! [this new-epoch])
   (set-endpoint-peers! [this new-peers])
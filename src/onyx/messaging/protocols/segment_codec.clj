@@ -0,0 +1,10 @@
+(ns onyx.messaging.protocols.segment-codec)
+
+(defprotocol SegmentCodec
+  (encode! [this data-output segment])
+  (decode [this data-input]))
+
+(defmulti build-codec
+  "Builds the codec used for segments sent to the task described by task-map."
+  (fn [task-map]
+    (get task-map :onyx/segment-codec :nippy)))
@@ -13,6 +13,7 @@
   (offer-ready-reply! [this])
   (completed? [this])
   (blocked? [this])
+  (barrier-pending? [this] "True when a barrier has been received from every upstream peer.")
   (unblock! [this])
   (alive? [this])
   (recovered? [this])
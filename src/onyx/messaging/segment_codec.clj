@@ -0,0 +1,183 @@
+(ns ^:no-doc onyx.messaging.segment-codec
+  (:require [onyx.messaging.protocols.segment-codec :as codec]
+            [onyx.compression.nippy :refer [messaging-compress-output messaging-decompress-input]]
+            [taoensso.nippy :as nippy])
+  (:import [java.io DataInput DataOutput]
+           [java.nio.charset StandardCharsets]
+           [java.util UUID]
+           [clojure.lang IEditableCollection]))
+
+(deftype NippyCodec []
+  codec/SegmentCodec
+  (encode! [this data-output segment]
+    (messaging-compress-output data-output segment))
+  (decode [this data-input]
+    (messaging-decompress-input data-input)))
+
+(defmethod codec/build-codec :nippy [task-map]
+  (->NippyCodec))
+
+(defmethod codec/build-codec :default [task-map]
+  (throw (ex-info (format "No segment codec registered for %s. Extend onyx.messaging.protocols.segment-codec/build-codec to add one."
+                          (:onyx/segment-codec task-map))
+                  {:task (:onyx/name task-map)
+                   :segment-codec (:onyx/segment-codec task-map)})))
+
+;; Fixed-shape codec for flat maps whose key types are declared up front via
+;; :onyx/segment-schema. Keys are never written, and values are written
+;; without nippy's per-value type tags. Segments that don't fit the schema
+;; still round trip, but through nippy.
+
+(def ^:const type-any 0)
+(def ^:const type-long 1)
+(def ^:const type-double 2)
+(def ^:const type-boolean 3)
+(def ^:const type-string 4)
+(def ^:const type-keyword 5)
+(def ^:const type-uuid 6)
+
+(def schema-types
+  {:any type-any
+   :long type-long
+   :double type-double
+   :boolean type-boolean
+   :string type-string
+   :keyword type-keyword
+   :uuid type-uuid})
+
+;; Leading byte of every encoded segment
+(def ^:const kind-fixed 0)
+(def ^:const kind-fixed-with-extras 1)
+(def ^:const kind-fallback 2)
+
+(def max-schema-keys 63)
+
+(defn type-matches? [^long value-type v]
+  (case value-type
+    0 true
+    1 (instance? Long v)
+    2 (instance? Double v)
+    3 (instance? Boolean v)
+    4 (instance? String v)
+    5 (instance? clojure.lang.Keyword v)
+    6 (instance? UUID v)))
+
+(defn presence-mask
+  "Returns a bitmask of the schema keys present in segment with non-nil values,
+   or -1 if a value does not match its declared type."
+  ^long [^objects ks ^longs types segment]
+  (loop [i 0 mask 0]
+    (if (< i (alength ks))
+      (let [v (get segment (aget ks i))]
+        (cond (nil? v)
+              (recur (inc i) mask)
+              (type-matches? (aget types i) v)
+              (recur (inc i) (bit-or mask (bit-shift-left 1 i)))
+              :else
+              -1))
+      mask)))
+
+(defn write-string! [^DataOutput out ^String s]
+  (let [bs (.getBytes s StandardCharsets/UTF_8)]
+    (.writeInt out (alength bs))
+    (.write out bs)))
+
+(defn read-string* ^String [^DataInput in]
+  (let [bs (byte-array (.readInt in))]
+    (.readFully in bs)
+    (String. bs StandardCharsets/UTF_8)))
+
+(defn write-value! [^DataOutput out ^long value-type v]
+  (case value-type
+    0 (nippy/freeze-to-out! out v)
+    1 (.writeLong out (long v))
+    2 (.writeDouble out (double v))
+    3 (.writeBoolean out (boolean v))
+    4 (write-string! out v)
+    5 (write-string! out (subs (str v) 1))
+    6 (do (.writeLong out (.getMostSignificantBits ^UUID v))
+          (.writeLong out (.getLeastSignificantBits ^UUID v)))))
+
+(defn read-value [^DataInput in ^long value-type]
+  (case value-type
+    0 (nippy/thaw-from-in! in)
+    1 (.readLong in)
+    2 (.readDouble in)
+    3 (.readBoolean in)
+    4 (read-string* in)
+    5 (keyword (read-string* in))
+    6 (UUID. (.readLong in) (.readLong in))))
+
+(defn write-mask! [^DataOutput out ^long mask ^long n-bytes]
+  (dotimes [i n-bytes]
+    (.writeByte out (int (bit-and (unsigned-bit-shift-right mask (* 8 i)) 0xFF)))))
+
+(defn read-mask ^long [^DataInput in ^long n-bytes]
+  (loop [i 0 mask 0]
+    (if (< i n-bytes)
+      (recur (inc i)
+             (bit-or mask (bit-shift-left (long (.readUnsignedByte in)) (* 8 i))))
+      mask)))
+
+(defn fixed-shape?
+  "Records fall back to nippy so that they keep their type, as do maps that
+   can't be made transient to strip the schema keys."
+  [segment]
+  (and (map? segment)
+       (not (record? segment))
+       (instance? IEditableCollection segment)))
+
+(defn extra-keys [^objects ks ^long mask segment]
+  (persistent!
+   (reduce (fn [m i]
+             (if (bit-test mask i)
+               (dissoc! m (aget ks i))
+               m))
+           (transient segment)
+           (range (alength ks)))))
+
+(deftype FlatMapCodec [^objects ks ^longs types ^long n-bytes]
+  codec/SegmentCodec
+  (encode! [this data-output segment]
+    (let [^DataOutput out data-output
+          mask (if (fixed-shape? segment) (presence-mask ks types segment) -1)]
+      (if (neg? mask)
+        (do (.writeByte out kind-fallback)
+            (nippy/freeze-to-out! out segment))
+        (let [extras? (not= (count segment) (Long/bitCount mask))]
+          (.writeByte out (if extras? kind-fixed-with-extras kind-fixed))
+          (write-mask! out mask n-bytes)
+          (dotimes [i (alength ks)]
+            (when (bit-test mask i)
+              (write-value! out (aget types i) (get segment (aget ks i)))))
+          (when extras?
+            (nippy/freeze-to-out! out (extra-keys ks mask segment)))))))
+  (decode [this data-input]
+    (let [^DataInput in data-input
+          kind (long (.readByte in))]
+      (if (= kind kind-fallback)
+        (nippy/thaw-from-in! in)
+        (let [mask (read-mask in n-bytes)
+              segment (loop [i 0 m (transient {})]
+                        (if (< i (alength ks))
+                          (recur (inc i)
+                                 (if (bit-test mask i)
+                                   (assoc! m (aget ks i) (read-value in (aget types i)))
+                                   m))
+                          m))]
+          (persistent!
+           (if (= kind kind-fixed-with-extras)
+             (reduce-kv assoc! segment (nippy/thaw-from-in! in))
+             segment)))))))
+
+(defmethod codec/build-codec :flat-map [{:keys [onyx/segment-schema] :as task-map}]
+  (when (or (empty? segment-schema) (> (count segment-schema) max-schema-keys))
+    (throw (ex-info (format ":onyx/segment-schema must declare between 1 and %s keys when using the :flat-map segment codec."
+                            max-schema-keys)
+                    {:task (:onyx/name task-map)
+                     :segment-schema segment-schema})))
+  ;; both sides of an edge must agree on key order
+  (let [entries (sort-by (comp str key) segment-schema)]
+    (->FlatMapCodec (object-array (map key entries))
+                    (long-array (map (comp schema-types val) entries))
+                    (quot (+ (count entries) 7) 8))))
@@ -1,63 +1,277 @@
 (ns onyx.messaging.serialize
-  (:require [onyx.compression.nippy :refer [messaging-compress messaging-decompress]])
+  (:require [onyx.compression.nippy :refer [messaging-compress messaging-decompress]]
+            [onyx.messaging.direct-buffer-input :as dbi]
+            [onyx.messaging.direct-buffer-output :as dbo]
+            [onyx.messaging.protocols.segment-codec :as codec])
   (:import [org.agrona.concurrent UnsafeBuffer]
-           [onyx.serialization MessageEncoder MessageDecoder MessageEncoder$SegmentsEncoder]))
+           [org.agrona MutableDirectBuffer]
+           [java.nio ByteOrder BufferOverflowException]
+           [java.util UUID]
+           [onyx.messaging.direct_buffer_input DirectBufferDataInput]
+           [onyx.messaging.direct_buffer_output DirectBufferDataOutput]
+           [onyx.serialization MessageEncoder MessageDecoder MessageEncoder$SegmentsEncoder MessageDecoder$SegmentsDecoder
+            BarrierEncoder BarrierDecoder HeartbeatEncoder HeartbeatDecoder
+            ReadyEncoder ReadyDecoder ReadyReplyEncoder ReadyReplyDecoder]))
 
 (def message-id ^:const (byte 0))
 (def barrier-id ^:const (byte 1))
 (def heartbeat-id ^:const (byte 2))
 (def ready-id ^:const (byte 3))
 (def ready-reply-id ^:const (byte 4))
+;; Part of a segment too large for a single frame, see onyx.messaging.chunking
+(def chunk-id ^:const (byte 5))
 
-; (defn message [replica-version short-id payload]
-;   {:type message-id :replica-version replica-version :short-id short-id :payload payload})
+;; Set on the message type of Message frames whose segments group is compressed
+(def compressed-flag ^:const (byte 0x40))
+(def compressed-message-id ^:const (byte (bit-or message-id compressed-flag)))
 
-(defn barrier [replica-version epoch short-id]
-  {:type barrier-id :replica-version replica-version :epoch epoch :short-id short-id})
+;; Peer ids are encoded as a type byte and two longs. Only ids that fit in
+;; them exactly can be encoded, so that heartbeats and ready replies are never
+;; attributed to the wrong peer.
+(def peer-id-any ^:const (byte 0))
+(def peer-id-uuid ^:const (byte 1))
+(def peer-id-coordinator ^:const (byte 2))
 
-;; should be able to get rid of src-peer-id via short-id
-(defn ready [replica-version src-peer-id short-id]
-  {:type ready-id :replica-version replica-version :src-peer-id src-peer-id :short-id short-id})
+;; Optional booleans are encoded as -1 (absent), 0 (false), 1 (true)
+(def flag-absent ^:const (byte -1))
 
-(defn ready-reply [replica-version src-peer-id dst-peer-id session-id short-id]
-  {:type ready-reply-id :replica-version replica-version :src-peer-id src-peer-id 
-   :dst-peer-id dst-peer-id :session-id session-id :short-id short-id})
+(def ^bytes empty-payload (byte-array 0))
 
-(defn heartbeat [replica-version epoch src-peer-id dst-peer-id session-id short-id]
-  {:type heartbeat-id :replica-version replica-version :epoch epoch 
-   :src-peer-id src-peer-id :dst-peer-id dst-peer-id :session-id session-id
-   :short-id short-id})
+;; Sufficient for every control message other than barriers carrying recovery coordinates
+(def control-message-length 128)
+
+(defn control-buffer ^UnsafeBuffer
+  ([] (control-buffer control-message-length))
+  ([length] (UnsafeBuffer. (byte-array length))))
 
 (defn get-message-type [^UnsafeBuffer buf offset]
   (.getByte buf ^long offset))
 
-(defn put-message-type [^UnsafeBuffer buf offset type-id] 
-  (.putByte buf offset type-id))
-
-(defn serialize ^UnsafeBuffer [msg]
-  (let [bs ^bytes (messaging-compress msg)
-        length (inc (alength bs))
-        buf (UnsafeBuffer. (byte-array length))]
-    (put-message-type buf 0 (:type msg))
-    (.putBytes buf 1 bs)
-    buf))  
-
-(defn deserialize [^UnsafeBuffer buf offset length]
-  (let [bs (byte-array length)] 
-    (.getBytes buf offset bs)
-    (messaging-decompress bs)))
-
-(defn add-segment-payload! [^MessageEncoder encoder segments]
-  (let [seg-encoder (loop [^MessageEncoder$SegmentsEncoder enc (.segmentsCount encoder (count segments))
-                           v (first segments) 
-                           vs (rest segments)]
-                      (let [bs ^bytes (messaging-compress v) 
-                            cnt ^int (alength bs)]
-                        (when v 
-                          (recur (.putSegmentBytes (.next enc) bs 0 cnt)
-                                 (first vs) 
-                                 (rest vs)))))]
-    (.encodedLength encoder)))
+(defn put-message-type [^MutableDirectBuffer buf offset type-id]
+  (.putByte buf (int offset) (byte type-id)))
+
+(defn peer-id-type [peer-id]
+  (cond (= :any peer-id)
+        peer-id-any
+        (instance? UUID peer-id)
+        peer-id-uuid
+        (and (vector? peer-id)
+             (= :coordinator (first peer-id))
+             (instance? UUID (second peer-id)))
+        peer-id-coordinator
+        :else
+        (throw (ex-info "Peer ids sent over Aeron must be UUIDs, [:coordinator UUID] or :any."
+                        {:peer-id peer-id}))))
+
+(defn peer-id-msb ^long [peer-id]
+  (case (int (peer-id-type peer-id))
+    1 (.getMostSignificantBits ^UUID peer-id)
+    2 (.getMostSignificantBits ^UUID (second peer-id))
+    0))
+
+(defn peer-id-lsb ^long [peer-id]
+  (case (int (peer-id-type peer-id))
+    0 0
+    1 (.getLeastSignificantBits ^UUID peer-id)
+    2 (.getLeastSignificantBits ^UUID (second peer-id))))
+
+(defn peer-id-matches? [peer-id peer-type ^long msb ^long lsb]
+  (and (== (long peer-type) (long (peer-id-type peer-id)))
+       (== msb (peer-id-msb peer-id))
+       (== lsb (peer-id-lsb peer-id))))
+
+(defn opt->flag [opts k]
+  (if (contains? opts k)
+    (if (get opts k) (byte 1) (byte 0))
+    flag-absent))
+
+(defn flag->opt [flag]
+  (== 1 (long flag)))
+
+;; Every control message starts with its replicaVersion, so the replica version
+;; and short id can be read before dispatching on the message type.
+(defn get-replica-version ^long [^UnsafeBuffer buf offset]
+  (.getLong buf (int offset) ByteOrder/LITTLE_ENDIAN))
+
+(defn get-dest-id ^long [^UnsafeBuffer buf offset msg-type]
+  (let [field-offset (case (int msg-type)
+                       1 (BarrierDecoder/destIdEncodingOffset)
+                       2 (HeartbeatDecoder/destIdEncodingOffset)
+                       3 (ReadyDecoder/destIdEncodingOffset)
+                       4 (ReadyReplyDecoder/destIdEncodingOffset)
+                       ;; chunk frames put the dest id after the replica version
+                       5 8)]
+    (bit-and (.getShort buf (int (+ (long offset) (long field-offset))) ByteOrder/LITTLE_ENDIAN)
+             0xFFFF)))
+
+(defn barrier-buffer
+  "Returns a buffer large enough to encode a barrier with the supplied payload."
+  ^UnsafeBuffer [^UnsafeBuffer buf ^bytes payload]
+  (if (and payload (> (+ (alength payload) control-message-length) (.capacity buf)))
+    (control-buffer (+ (alength payload) control-message-length))
+    buf))
+
+(defn barrier-length
+  "Total length of a barrier carrying recover-payload, including the message type."
+  ^long [^bytes recover-payload]
+  (+ 1 BarrierEncoder/BLOCK_LENGTH (BarrierEncoder/payloadBytesHeaderLength)
+     (if recover-payload (alength recover-payload) 0)))
+
+(def heartbeat-length (inc HeartbeatEncoder/BLOCK_LENGTH))
+
+(def ready-length (inc ReadyEncoder/BLOCK_LENGTH))
+
+(def ready-reply-length (inc ReadyReplyEncoder/BLOCK_LENGTH))
+
+(defn encode-barrier!
+  "Encodes a barrier into buf at offset, after the message type. Returns the total length."
+  [^MutableDirectBuffer buf offset ^BarrierEncoder encoder replica-version epoch short-id opts ^bytes recover-payload]
+  (put-message-type buf offset barrier-id)
+  (let [encoder (-> encoder
+                    (.wrap buf (inc (long offset)))
+                    (.replicaVersion replica-version)
+                    (.epoch epoch)
+                    (.destId short-id)
+                    (.completed (opt->flag opts :completed?))
+                    (.hasRecoverCoordinates (opt->flag opts :recover-coordinates)))]
+    (let [payload (or recover-payload empty-payload)]
+      (.putPayloadBytes encoder payload 0 (alength payload)))
+    (inc (.encodedLength encoder))))
+
+(defn recover-payload ^bytes [opts]
+  (when (contains? opts :recover-coordinates)
+    (messaging-compress (:recover-coordinates opts))))
+
+(defn wrap-barrier-decoder ^BarrierDecoder [^BarrierDecoder decoder ^UnsafeBuffer buf offset]
+  (.wrap decoder buf (int offset) BarrierDecoder/BLOCK_LENGTH 0))
+
+(defn get-recover-coordinates [^BarrierDecoder decoder]
+  (when (flag->opt (.hasRecoverCoordinates decoder))
+    (let [bs (byte-array (.payloadBytesLength decoder))]
+      (.getPayloadBytes decoder bs 0 (alength bs))
+      (messaging-decompress bs))))
+
+(defn encode-heartbeat!
+  "Encodes a heartbeat into buf at offset, after the message type. Returns the total length."
+  [^MutableDirectBuffer buf offset ^HeartbeatEncoder encoder replica-version epoch src-peer-id dst-peer-id session-id short-id opts]
+  (put-message-type buf offset heartbeat-id)
+  (let [encoder (-> encoder
+                    (.wrap buf (inc (long offset)))
+                    (.replicaVersion replica-version)
+                    (.epoch epoch)
+                    (.minEpoch (if-let [min-epoch (:min-epoch opts)]
+                                 min-epoch
+                                 (HeartbeatEncoder/minEpochNullValue)))
+                    (.destId short-id)
+                    (.sessionId session-id)
+                    (.srcPeerType (peer-id-type src-peer-id))
+                    (.srcPeerMsb (peer-id-msb src-peer-id))
+                    (.srcPeerLsb (peer-id-lsb src-peer-id))
+                    (.dstPeerType (peer-id-type dst-peer-id))
+                    (.dstPeerMsb (peer-id-msb dst-peer-id))
+                    (.dstPeerLsb (peer-id-lsb dst-peer-id))
+                    (.checkpointing (opt->flag opts :checkpointing?))
+                    (.drained (opt->flag opts :drained?)))]
+    (inc (.encodedLength encoder))))
+
+(defn wrap-heartbeat-decoder ^HeartbeatDecoder [^HeartbeatDecoder decoder ^UnsafeBuffer buf offset]
+  (.wrap decoder buf (int offset) HeartbeatDecoder/BLOCK_LENGTH 0))
+
+(defn encode-ready!
+  "Encodes a ready message into buf at offset, after the message type. Returns the total length."
+  [^MutableDirectBuffer buf offset ^ReadyEncoder encoder replica-version short-id]
+  (put-message-type buf offset ready-id)
+  (let [encoder (-> encoder
+                    (.wrap buf (inc (long offset)))
+                    (.replicaVersion replica-version)
+                    (.destId short-id))]
+    (inc (.encodedLength encoder))))
+
+(defn encode-ready-reply!
+  "Encodes a ready reply into buf at offset, after the message type. Returns the total length."
+  [^MutableDirectBuffer buf offset ^ReadyReplyEncoder encoder replica-version src-peer-id dst-peer-id session-id short-id]
+  (put-message-type buf offset ready-reply-id)
+  (let [encoder (-> encoder
+                    (.wrap buf (inc (long offset)))
+                    (.replicaVersion replica-version)
+                    (.destId short-id)
+                    (.sessionId session-id)
+                    (.srcPeerType (peer-id-type src-peer-id))
+                    (.srcPeerMsb (peer-id-msb src-peer-id))
+                    (.srcPeerLsb (peer-id-lsb src-peer-id))
+                    (.dstPeerType (peer-id-type dst-peer-id))
+                    (.dstPeerMsb (peer-id-msb dst-peer-id))
+                    (.dstPeerLsb (peer-id-lsb dst-peer-id)))]
+    (inc (.encodedLength encoder))))
+
+(defn wrap-ready-reply-decoder ^ReadyReplyDecoder [^ReadyReplyDecoder decoder ^UnsafeBuffer buf offset]
+  (.wrap decoder buf (int offset) ReadyReplyDecoder/BLOCK_LENGTH 0))
+
+(def frame-header-length
+  "Message type, message block and segment group header."
+  (+ 1 MessageEncoder/BLOCK_LENGTH (MessageEncoder$SegmentsEncoder/sbeHeaderSize)))
+
+(def segment-header-length 
+  (MessageDecoder$SegmentsDecoder/segmentBytesHeaderLength))
+
+;; SBE limits the number of entries in a group
+(def max-segments-per-message 65534)
+
+(defn segment-too-large! [^MutableDirectBuffer buf]
+  (throw (ex-info "Serialized segment is larger than the maximum message length."
+                  {:type ::segment-too-large
+                   :max-message-length (.capacity buf)})))
+
+(defn segment-too-large? [e]
+  (= ::segment-too-large (:type (ex-data e))))
+
+(defn encode-segment!
+  "Encodes segment directly into buf after its var data length header.
+   Returns the position after the segment, or -1 if it did not fit."
+  [segment-codec ^DirectBufferDataOutput output ^MutableDirectBuffer buf offset segment]
+  (let [data-offset (+ (long offset) (long segment-header-length))]
+    (dbo/wrap! output buf data-offset (.capacity buf))
+    (try
+     (codec/encode! segment-codec output segment)
+     (let [end (long (dbo/position output))]
+       (.putInt buf (int offset) (int (- end data-offset)) ByteOrder/LITTLE_ENDIAN)
+       end)
+     (catch BufferOverflowException _
+       -1))))
+
+(defn encode-segments!
+  "Streams segments, starting from index start, straight into the encoder's buffer
+   until the message would exceed max-bytes or contain max-count segments. A segment 
+   larger than max-bytes is encoded alone. Returns the index of the first segment
+   that was not encoded."
+  [^MessageEncoder encoder segment-codec ^DirectBufferDataOutput output 
+   ^java.util.List segments start max-bytes max-count]
+  (let [start (long start)
+        max-bytes (long max-bytes)
+        max-count (long max-count)
+        buf (.buffer encoder)
+        group-offset (.limit encoder)
+        last-idx (min (.size segments) (+ start (min max-count max-segments-per-message)))
+        end (loop [i start 
+                   pos (+ group-offset (MessageEncoder$SegmentsEncoder/sbeHeaderSize))]
+              (if (< i last-idx)
+                (let [new-pos (long (encode-segment! segment-codec output buf pos (.get segments i)))
+                      first? (= i start)]
+                  (cond (and (neg? new-pos) first?)
+                        (segment-too-large! buf)
+
+                        (or (neg? new-pos) 
+                            (and (not first?) (> new-pos max-bytes)))
+                        [i pos]
+
+                        :else
+                        (recur (inc i) new-pos)))
+                [i pos]))
+        end-idx (long (nth end 0))]
+    (.limit encoder group-offset)
+    (.segmentsCount encoder (int (- end-idx start)))
+    (.limit encoder (int (nth end 1)))
+    end-idx))
 
 (defn wrap-message-encoder ^MessageEncoder [^UnsafeBuffer buf offset]
   (-> (MessageEncoder.)
@@ -67,10 +281,18 @@
   (-> (MessageDecoder.)
       (.wrap buf offset MessageDecoder/BLOCK_LENGTH 0)))
 
-(defn into-segments! [^MessageDecoder decoder ^bytes bs segments]
-  (loop [dc (.segments decoder) cnt 0]
-    (when (.hasNext dc)
-      (.getSegmentBytes dc bs 0 (.segmentBytesLength dc))
-      (conj! segments (messaging-decompress bs))
-      (recur (.next dc) (inc cnt))))
+(defn into-segments!
+  "Thaws each segment in place from the decoder's buffer, rather than copying
+   it out into a byte array first."
+  [^MessageDecoder decoder segment-codec ^DirectBufferDataInput input segments]
+  (let [header-length (MessageDecoder$SegmentsDecoder/segmentBytesHeaderLength)]
+    (loop [^MessageDecoder$SegmentsDecoder dc (.segments decoder)]
+      (when (.hasNext dc)
+        (let [dc (.next dc)
+              length (.segmentBytesLength dc)
+              offset (+ (.limit decoder) header-length)]
+          (dbi/wrap! input (.buffer decoder) offset length)
+          (conj! segments (codec/decode segment-codec input))
+          (.limit decoder (int (+ offset length)))
+          (recur dc)))))
   segments)
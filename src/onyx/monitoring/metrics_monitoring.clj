@@ -213,6 +213,18 @@
           batch-serialization-latency ^com.codahale.metrics.Timer (t/timer task-registry (into tag ["serialization-latency"]))
           written-bytes (AtomicLong.)
           written-bytes-gg (g/gauge-fn task-registry (conj tag "written-bytes") (fn [] (.get ^AtomicLong written-bytes)))
+          frame-fill-percent (h/histogram task-registry (conj tag "frame-fill-percent"))
+          load-balance-skew-percent (h/histogram task-registry (conj tag "load-balance-skew-percent"))
+          frame-compression-percent (h/histogram task-registry (conj tag "frame-compression-percent"))
+          frame-compression-ns (AtomicLong.)
+          frame-compression-ns-gg (g/gauge-fn task-registry (conj tag "frame-compression-ns") (fn [] (.get ^AtomicLong frame-compression-ns)))
+          serialization-cache-hits (AtomicLong.)
+          serialization-cache-misses (AtomicLong.)
+          serialization-cache-hit-percent-gg (g/gauge-fn task-registry (conj tag "serialization-cache-hit-percent")
+                                                         (fn [] 
+                                                           (let [hits (.get ^AtomicLong serialization-cache-hits)
+                                                                 total (+ hits (.get ^AtomicLong serialization-cache-misses))]
+                                                             (if (zero? total) 0 (quot (* 100 hits) total)))))
 
           publication-errors (AtomicLong.)
           publication-errors-gg (g/gauge-fn task-registry (conj tag "publication-errors") (fn [] (.get ^AtomicLong publication-errors)))
@@ -248,6 +260,12 @@
                   (new-lifecycle-latency task-registry tag lifecycle))))
        (assoc component
               :written-bytes written-bytes
+              :frame-fill-percent frame-fill-percent
+              :load-balance-skew-percent load-balance-skew-percent
+              :frame-compression-percent frame-compression-percent
+              :frame-compression-ns frame-compression-ns
+              :serialization-cache-hits serialization-cache-hits
+              :serialization-cache-misses serialization-cache-misses
               :publication-errors publication-errors
               :read-bytes read-bytes
               :subscription-errors subscription-errors
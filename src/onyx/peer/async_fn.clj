@@ -0,0 +1,145 @@
+(ns ^:no-doc onyx.peer.async-fn
+  "Function tasks with :onyx/async-fn? set call their fn without waiting for
+   the result. The fn returns a CompletableFuture or a core.async channel, and up
+   to :onyx/async-max-in-flight calls may be outstanding per peer. Results are
+   emitted in the batches after their calls complete, so a task may have calls
+   in flight across batches, but never across a barrier."
+  (:require [clojure.core.async :as a]
+            [onyx.protocol.task-state :refer [advance get-event set-event!]]
+            [onyx.types :refer [->Result ->Results]]
+            [onyx.static.default-vals :refer [arg-or-default]]
+            [clj-tuple :as t])
+  (:import [java.util ArrayDeque ArrayList Iterator]
+           [java.util.concurrent CompletableFuture]
+           [clojure.core.async.impl.protocols ReadPort]))
+
+(defn ->future
+  "Coerces the return value of an async fn to a CompletableFuture. Values that
+   are neither futures nor channels are treated as completed calls."
+  ^CompletableFuture [ret]
+  (cond (instance? CompletableFuture ret)
+        ret
+
+        (instance? ReadPort ret)
+        (let [fut (CompletableFuture.)]
+          (a/take! ret (fn [v] (.complete fut v)))
+          fut)
+
+        :else
+        (CompletableFuture/completedFuture ret)))
+
+(defn call-async [f segment]
+  (try
+    (->future (f segment))
+    (catch Throwable e
+      (doto (CompletableFuture.)
+        (.completeExceptionally e)))))
+
+(defn completed-segments
+  "The segments returned by a completed call, with failures wrapped as they
+   are for synchronous fns."
+  [^CompletableFuture fut segment]
+  (let [segments (try (.getNow fut nil)
+                      (catch Throwable e
+                        (ex-info "Segment threw exception"
+                                 {:exception (or (.getCause e) e) :segment segment})))]
+    (if (sequential? segments) segments (t/vector segments))))
+
+(defprotocol PAsyncCalls
+  (launch! [this f batch]
+    "Calls f on the segments of batch that have not been called yet, until
+     max-in-flight calls are outstanding. Calls that have completed are moved
+     out of flight first, so that they free capacity even before their results
+     are collected. Returns true once f has been called on every segment in
+     the batch.")
+  (collect! [this]
+    "Returns Result records for calls that have completed. When ordered, only
+     calls that completed before every earlier call are returned.")
+  (in-flight [this] 
+    "The number of calls whose results have not been collected yet.")
+  (clear! [this]))
+
+(defn completed-result [^objects call]
+  (->Result (aget call 0) (completed-segments (aget call 1) (aget call 0))))
+
+(defn drain-completed!
+  "Moves calls that have completed from calls to completed, as Result records."
+  [^ArrayDeque calls ^ArrayList completed ordered?]
+  (if ordered?
+    (loop []
+      (let [^objects call (.peekFirst calls)]
+        (when (and call (.isDone ^CompletableFuture (aget call 1)))
+          (.pollFirst calls)
+          (.add completed (completed-result call))
+          (recur))))
+    (let [^Iterator it (.iterator calls)]
+      (loop []
+        (when (.hasNext it)
+          (let [^objects call (.next it)]
+            (when (.isDone ^CompletableFuture (aget call 1))
+              (.remove it)
+              (.add completed (completed-result call))))
+          (recur))))))
+
+;; Calls are kept in order as [segment future] pairs. Calls that completed
+;; while the rest of a batch was waiting to launch are held in completed
+;; until they are collected.
+(deftype AsyncCalls [^ArrayDeque calls ^ArrayList completed ^long max-in-flight ordered?
+                     ^:unsynchronized-mutable launching
+                     ^:unsynchronized-mutable ^long next-idx]
+  PAsyncCalls
+  (launch! [this f batch]
+    (when-not (identical? batch launching)
+      (set! launching batch)
+      (set! next-idx 0))
+    (drain-completed! calls completed ordered?)
+    (let [n (count batch)
+          start next-idx
+          end (min n (+ start (max 0 (- max-in-flight (.size calls)))))]
+      (loop [i start]
+        (when (< i end)
+          (let [segment (nth batch i)]
+            (.addLast calls (object-array [segment (call-async f segment)]))
+            (recur (inc i)))))
+      (set! next-idx end)
+      (= end n)))
+  (collect! [this]
+    (drain-completed! calls completed ordered?)
+    (let [results (vec completed)]
+      (.clear completed)
+      results))
+  (in-flight [this]
+    (+ (.size calls) (.size completed)))
+  (clear! [this]
+    (.clear calls)
+    (.clear completed)
+    (set! launching nil)
+    (set! next-idx 0)))
+
+(defn new-async-calls [task-map]
+  (->AsyncCalls (ArrayDeque.)
+                (ArrayList.)
+                (arg-or-default :onyx/async-max-in-flight task-map)
+                (arg-or-default :onyx/async-ordered? task-map)
+                nil
+                0))
+
+(defn pending? [calls]
+  (boolean (and calls (pos? (in-flight calls)))))
+
+(defn apply-async-fn
+  "Launches the calls for the batch, and emits the results of completed calls.
+   Waits without advancing while calls can't be launched, or while there is
+   nothing to emit but calls are still in flight. Calls that complete while
+   waiting free their capacity on the next attempt, and their results are
+   emitted once the whole batch is launched."
+  [calls f state]
+  (let [{:keys [onyx.core/batch] :as event} (get-event state)]
+    (if (launch! calls f batch)
+      (let [results (collect! calls)]
+        (if (or (seq batch) (seq results) (not (pending? calls)))
+          (-> state
+              (set-event! (assoc event :onyx.core/results (->Results results nil nil)))
+              (advance))
+          state))
+      state)))
@@ -0,0 +1,63 @@
+(ns ^:no-doc onyx.peer.fusion
+  "Runs the fns of the logical tasks that planning fused into this task. Each
+   segment the task's own fn emits is passed through the fused fns in workflow
+   order. Time spent and segments read are reported per logical task, and
+   exceptions name the logical task that threw them."
+  (:require [metrics.gauges :as g]
+            [onyx.peer.operation :as operation]
+            [onyx.peer.task-compile :as c]
+            [onyx.peer.transform :as transform]
+            [clj-tuple :as t])
+  (:import [java.util.concurrent.atomic AtomicLong]))
+
+(defn as-segments [ret]
+  (if (sequential? ret) ret (t/vector ret)))
+
+(defn fused-step
+  "Returns a fn from a segment to the segments the fused task emits for it."
+  [task-name f ^AtomicLong fn-ns ^AtomicLong segments-in]
+  (fn [segment]
+    (let [start (System/nanoTime)]
+      (.incrementAndGet segments-in)
+      (try
+        (as-segments (f segment))
+        (catch Throwable e
+          (throw (ex-info (str "Exception in fused task " task-name)
+                          {:onyx/fused-task task-name :segment segment}
+                          e)))
+        (finally
+          (.addAndGet fn-ns (- (System/nanoTime) start)))))))
+
+(defn register-step-metrics!
+  "Registers gauges for a fused task in the task's registry, tagged like the
+   metrics of a separate task."
+  [{:keys [onyx.core/monitoring onyx.core/job-id onyx.core/id] :as event} task-name
+   ^AtomicLong fn-ns ^AtomicLong segments-in]
+  (when-let [reg (:registry monitoring)]
+    (let [job-name (str (get-in event [:onyx.core/task-information :metadata :name] job-id))
+          tag ["job" job-name "task" (name task-name) "peer-id" (str id) "fused"]]
+      (g/gauge-fn reg (conj tag "apply-fn-ns") (fn [] (.get fn-ns)))
+      (g/gauge-fn reg (conj tag "segments-in") (fn [] (.get segments-in))))))
+
+(defn fuse-fn
+  "Composes f, the task's own fn with its params curried, with the fns of the
+   fused tasks in task-map."
+  [{:keys [onyx.core/task-map onyx.core/peer-opts] :as event} f]
+  (if-let [fused-tasks (seq (:onyx/fused-tasks task-map))]
+    (let [steps (mapv (fn [fused-task]
+                        (let [task-name (:onyx/name fused-task)
+                              fn-ns (AtomicLong.)
+                              segments-in (AtomicLong.)]
+                          (register-step-metrics! event task-name fn-ns segments-in)
+                          (fused-step task-name
+                                      (transform/curry-params (operation/resolve-task-fn fused-task)
+                                                              (c/task-params peer-opts fused-task))
+                                      fn-ns
+                                      segments-in)))
+                      fused-tasks)]
+      (fn [segment]
+        (reduce (fn [segments step]
+                  (into [] (mapcat step) segments))
+                (as-segments (f segment))
+                steps)))
+    f))
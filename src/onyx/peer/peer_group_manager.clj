@@ -144,14 +144,14 @@
 
 (defmethod action :start-peer
   [{:keys [peer-config vpeer-system-fn group-state monitoring 
-           connected? messenger-group comm group-ch outbox-ch] :as state} 
+           connected? messenger-group worker-pool comm group-ch outbox-ch] :as state} 
    [type peer-owner-id]]
   (if connected?
     (let [vpeer-id (random-uuid)
           group-id (:id group-state)
           log (:log comm) 
           vpeer (component/start (vpeer-system-fn group-ch outbox-ch peer-config 
-                                                  messenger-group monitoring log group-id vpeer-id))] 
+                                                  messenger-group worker-pool monitoring log group-id vpeer-id))] 
       (-> state 
           (assoc-in [:vpeers vpeer-id] vpeer)
           (assoc-in [:peer-owners peer-owner-id] vpeer-id)))
@@ -236,7 +236,7 @@
 
 (defrecord PeerGroupManager [peer-config onyx-vpeer-system-fn]
   component/Lifecycle
-  (start [{:keys [monitoring query-server messenger-group] :as component}]
+  (start [{:keys [monitoring query-server messenger-group worker-pool] :as component}]
     (let [group-ch (chan 1000)
           shutdown-ch (chan 1)
           initial-state {:peer-config peer-config
@@ -252,6 +252,7 @@
                          :shutdown-ch shutdown-ch
                          :group-ch group-ch
                          :messenger-group messenger-group
+                         :worker-pool worker-pool
                          :monitoring monitoring
                          :query-server query-server
                          :peer-owners {}
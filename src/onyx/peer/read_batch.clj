@@ -8,41 +8,110 @@
             [onyx.protocol.task-state :refer :all]
             [clj-tuple :as t]
             [onyx.types :as types]
+            [onyx.windowing.combiner :as cb]
             [onyx.static.uuid :refer [random-uuid]]
+            [onyx.static.default-vals :refer [arg-or-default]]
+            [onyx.static.util :refer [ms->ns]]
             [onyx.types]
             [taoensso.timbre :as timbre :refer [debug info]])
-  (:import [java.util.concurrent.locks LockSupport]))
+  (:import [java.util ArrayList]))
 
-(defn read-function-batch [state]
-  (let [messenger (get-messenger state)
-        batch (m/poll messenger)]
-    (if batch
-      (let [pbatch (persistent! batch)] 
-        (debug "Read batch:" pbatch (select-keys (get-event state) [:onyx.core/task-id]))
-        (-> state 
-            (set-event! (assoc (get-event state) :onyx.core/batch pbatch))
-            (advance))) 
-      (do
-       ;; not ideal to park here, as it's a bit of a special case, however 
-       ;; this is the easiest way to achieve a backoff.
-       ;; It should be parking for batch-timeout.
-       ;; We can't simply block as we will not continue reading barriers.
-       (LockSupport/parkNanos (* 2 1000000))
-       (advance state)))))
+(defprotocol PBatchBuffer
+  (start! [this lifecycle-id]
+    "Starts filling a batch for the iteration with lifecycle-id, dropping
+     segments buffered by an earlier iteration that was abandoned.")
+  (add! [this segment])
+  (add-all! [this segments])
+  (buffered [this])
+  (started-ns [this])
+  (take-batch! [this]))
 
-(defn read-input-batch [state]
-  (let [{:keys [onyx.core/task-map onyx.core/id 
-                onyx.core/job-id onyx.core/task-id] :as event} (get-event state)
-        pipeline (get-input-pipeline state)
-        batch-size (:onyx/batch-size task-map)
-        batch (persistent! 
-               (loop [outgoing (transient [])]
-                 (if (< (count outgoing) batch-size) 
-                   (if-let [segment (p/poll! pipeline event)] 
-                     (recur (conj! outgoing segment))
-                     outgoing)
-                   outgoing)))]
-    (debug "Reading batch" "COUNT" (count batch) job-id task-id "peer-id" id batch)
-    (-> state
-        (set-event! (assoc event :onyx.core/batch batch))
-        (advance))))
+;; Segments are buffered here while a batch fills over several passes, rather
+;; than being assoc'd onto the event on each pass. There is one buffer per task.
+(deftype BatchBuffer [^ArrayList segments
+                      ^:unsynchronized-mutable lifecycle-id
+                      ^:unsynchronized-mutable ^long start-ns]
+  PBatchBuffer
+  (start! [this id]
+    (when-not (= id lifecycle-id)
+      (.clear segments)
+      (set! lifecycle-id id)
+      (set! start-ns (System/nanoTime)))
+    this)
+  (add! [this segment]
+    (.add segments segment)
+    this)
+  (add-all! [this coll]
+    (.addAll segments coll)
+    this)
+  (buffered [this]
+    (.size segments))
+  (started-ns [this]
+    start-ns)
+  (take-batch! [this]
+    (let [batch (vec segments)]
+      (.clear segments)
+      (set! lifecycle-id nil)
+      batch)))
+
+(defn new-batch-buffer [batch-size]
+  (->BatchBuffer (ArrayList. (int batch-size)) nil 0))
+
+(defn batch-done?
+  "Batches are read until batch-size segments have been read, batch-timeout
+   has passed since reading started, or a barrier is waiting to be handled."
+  [messenger n-read batch-size batch-timeout-ns start-ns]
+  (or (>= (long n-read) (long batch-size))
+      (>= (- (System/nanoTime) (long start-ns)) (long batch-timeout-ns))
+      (m/barrier-pending? messenger)))
+
+(defn read-function-batch [{:keys [onyx.core/task-map]}]
+  (let [batch-size (long (:onyx/batch-size task-map))
+        batch-timeout-ns (long (ms->ns (arg-or-default :onyx/batch-timeout task-map)))
+        combine? (:onyx/combine? task-map)
+        buffer (new-batch-buffer batch-size)]
+    (fn [state]
+      (let [messenger (get-messenger state)
+            event (get-event state)
+            _ (start! buffer (:onyx.core/lifecycle-id event))
+            polled (m/poll messenger)]
+        (when polled
+          (add-all! buffer (persistent! polled)))
+        (if (batch-done? messenger (buffered buffer) batch-size batch-timeout-ns (started-ns buffer))
+          ;; partials from upstream combiners skip the task's fn,
+          ;; and are merged straight into the window state
+          (let [batch (take-batch! buffer)
+                event (if combine?
+                        (let [[batch partials] (cb/split-partials batch)]
+                          (assoc event :onyx.core/batch batch :onyx.core/partials partials))
+                        (assoc event :onyx.core/batch batch))]
+            (debug "Read batch:" (:onyx.core/batch event) (select-keys event [:onyx.core/task-id]))
+            (-> state 
+                (set-event! event)
+                (advance)))
+          ;; keep reading on the next pass, backing off with the task's idle strategy
+          state)))))
+
+(defn read-input-batch [{:keys [onyx.core/task-map]}]
+  (let [batch-size (long (:onyx/batch-size task-map))
+        batch-timeout-ns (long (ms->ns (arg-or-default :onyx/batch-timeout task-map)))
+        buffer (new-batch-buffer batch-size)]
+    (fn [state]
+      (let [{:keys [onyx.core/id onyx.core/job-id onyx.core/task-id] :as event} (get-event state)
+            messenger (get-messenger state)
+            pipeline (get-input-pipeline state)]
+        (start! buffer (:onyx.core/lifecycle-id event))
+        (loop []
+          (when (< (long (buffered buffer)) batch-size)
+            (when-let [segment (p/poll! pipeline event)]
+              (add! buffer segment)
+              (recur))))
+        ;; barriers from the coordinator end the batch early
+        (m/poll messenger)
+        (if (batch-done? messenger (buffered buffer) batch-size batch-timeout-ns (started-ns buffer))
+          (let [batch (take-batch! buffer)]
+            (debug "Reading batch" "COUNT" (count batch) job-id task-id "peer-id" id batch)
+            (-> state
+                (set-event! (assoc event :onyx.core/batch batch))
+                (advance)))
+          state)))))
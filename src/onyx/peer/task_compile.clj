@@ -6,6 +6,7 @@
             [onyx.flow-conditions.fc-compile :as fc]
             [onyx.lifecycles.lifecycle-compile :as lc]
             [onyx.peer.transform :as t]
+            [onyx.peer.async-fn :as async-fn]
             [onyx.peer.grouping :as g]
             [onyx.static.uuid :refer [random-uuid]]
             [onyx.static.validation :as validation]
@@ -43,9 +44,16 @@
       (assoc :task->group-by-fn (g/compile-grouping-fn catalog (:egress-tasks serialized-task)))
       (assoc :egress-tasks (:egress-tasks serialized-task))))
 
+(defn async-fn->event-map [{:keys [onyx.core/task-map] :as event}]
+  (cond-> event
+    (:onyx/async-fn? task-map)
+    (assoc :onyx.core/async-calls (async-fn/new-async-calls task-map))))
+
+(defn task-params [peer-opts task-map]
+  (let [fn-params (:onyx.peer/fn-params peer-opts)]
+    (into (vec (get fn-params (:onyx/name task-map)))
+          (map (fn [param] (get task-map param))
+               (:onyx/params task-map)))))
+
 (defn task-params->event-map [{:keys [onyx.core/peer-opts onyx.core/task-map] :as event}]
-  (let [fn-params (:onyx.peer/fn-params peer-opts)
-        params (into (vec (get fn-params (:onyx/name task-map)))
-                     (map (fn [param] (get task-map param))
-                          (:onyx/params task-map)))]
-    (assoc event :onyx.core/params params)))
+  (assoc event :onyx.core/params (task-params peer-opts task-map)))
@@ -1,5 +1,5 @@
 (ns ^:no-doc onyx.peer.task-lifecycle
-  (:require [clojure.core.async :refer [alts!! <!! >!! <! >! poll! timeout chan close! thread go]]
+  (:require [clojure.core.async :refer [alts!! <!! >!! <! >! poll! timeout chan close! thread go promise-chan]]
             [com.stuartsierra.component :as component]
             [onyx.schema :as os]
             [onyx.static.planning :as planning :refer [find-task]]
@@ -24,11 +24,13 @@
             [onyx.monitoring.metrics-monitoring :as metrics-monitoring]
             [onyx.peer.constants :refer [initialize-epoch]]
             [onyx.peer.task-compile :as c]
+            [onyx.peer.async-fn :as async-fn]
+            [onyx.peer.fusion :as fusion]
             [onyx.peer.coordinator :as coordinator :refer [new-peer-coordinator]]
             [onyx.peer.read-batch :as read-batch]
             [onyx.peer.operation :as operation]
             [onyx.peer.resume-point :as res]
-            [onyx.peer.status :refer [merge-statuses]]
+            [onyx.peer.worker-pool :as wp]
             ;[onyx.peer.visualization :as viz]
             [onyx.peer.window-state :as ws]
             [onyx.peer.transform :as transform :refer [apply-fn]]
@@ -52,7 +54,8 @@
             [onyx.types :refer [->Results ->MonitorEvent ->MonitorEventLatency]]
             [schema.core :as s]
             [taoensso.timbre :refer [debug info error warn trace fatal]])
-  (:import [org.agrona.concurrent IdleStrategy SleepingIdleStrategy BackoffIdleStrategy]
+  (:import [org.agrona.concurrent IdleStrategy SleepingIdleStrategy BackoffIdleStrategy 
+            BusySpinIdleStrategy YieldingIdleStrategy NoOpIdleStrategy]
            [java.util.concurrent TimeUnit]
            [java.util.concurrent.atomic AtomicLong]
            [java.util.concurrent.locks LockSupport]))
@@ -96,6 +99,8 @@
 (s/defn next-iteration
   [state]
   {:post [(empty? (:onyx.core/batch (:event %)))]}
+  ;; drain endpoint statuses once per iteration, rather than on each offer
+  (m/poll-heartbeats (get-messenger state))
   (-> state
       (set-context! nil)
       (reset-event!)
@@ -132,18 +137,17 @@
         (extensions/write-chunk log :exception (deserializable-exception inner {}) job-id)
         (>!! outbox-ch entry)))))
 
-(defn merged-statuses [state]
-  (->> (get-messenger state)
-       (m/publishers)
-       (mapcat (comp endpoint-status/statuses pub/endpoint-status))
-       (map val)
-       (into [{:ready? true
-               :replica-version (t/replica-version state)
-               :checkpointing? (not (checkpoint/complete? (:onyx.core/storage (get-event state))))
-               :epoch (t/epoch state)
-               :heartbeat (System/nanoTime)
-               :min-epoch (t/epoch state)}])
-       merge-statuses))
+(defn downstream-checkpointing? [publishers]
+  (boolean (some (comp endpoint-status/checkpointing? pub/endpoint-status) publishers)))
+
+(defn min-downstream-epoch 
+  "The lowest epoch that has been reported all the way downstream, as
+   maintained by each publisher's endpoint status."
+  [epoch publishers]
+  (reduce (fn [e pub]
+            (min e (endpoint-status/min-reported-epoch (pub/endpoint-status pub))))
+          epoch
+          publishers))
 
 (defn input-poll-barriers [state]
   (m/poll (get-messenger state))
@@ -252,18 +256,29 @@
 (defn input-function-seal-barriers? [state]
   (let [messenger (get-messenger state)
         subscriber (m/subscriber messenger)]
-    (if (sub/blocked? subscriber)
-      (if (synced? state)
-        (-> state
-            (next-epoch!)
-            (try-seal-job!)
-            (set-context! {:barrier-opts {:completed? (completed? state)}
-                           :src-peers (sub/src-peers subscriber)
-                           :publishers (m/publishers messenger)})
-            (advance))
-        ;; we need to wait until we're synced
-        state)
-      (goto-next-batch! state))))
+    (cond (not (sub/blocked? subscriber))
+          (goto-next-batch! state)
+
+          ;; async calls still in flight belong to this epoch, so their results
+          ;; are collected by another batch pass before the barrier
+          (async-fn/pending? (:onyx.core/async-calls (get-event state)))
+          (goto-next-batch! state)
+
+          ;; batches still pipelined in the output belong to this epoch, and must be
+          ;; written before its barrier
+          (and (mo/flush-pending! (get-output-pipeline state) messenger)
+               (synced? state))
+          (-> state
+              (next-epoch!)
+              (try-seal-job!)
+              (set-context! {:barrier-opts {:completed? (completed? state)}
+                             :src-peers (sub/src-peers subscriber)
+                             :publishers (m/publishers messenger)})
+              (advance))
+
+          ;; we need to wait until we're synced
+          :else
+          state)))
 
 (defn output-seal-barriers? [state]
   (let [subscriber (m/subscriber (get-messenger state))] 
@@ -292,9 +307,10 @@
       (set-context! state (assoc context :publishers remaining-pubs)))))
 
 (defn barrier-status-opts [state]
-  (let [status (merged-statuses state)]
-    {:checkpointing? (:checkpointing? status)
-     :min-epoch (:min-epoch status)
+  (let [publishers (m/publishers (get-messenger state))]
+    {:checkpointing? (or (not (checkpoint/complete? (:onyx.core/storage (get-event state))))
+                         (downstream-checkpointing? publishers))
+     :min-epoch (min-downstream-epoch (t/epoch state) publishers)
      :drained? (and (or (nil? (get-input-pipeline state)) 
                         (p/completed? (get-input-pipeline state)))
                     (or (nil? (get-output-pipeline state)) 
@@ -389,15 +405,18 @@
         _ (sub/poll! subscriber)]
     (if (and (sub/blocked? subscriber)
              (sub/recovered? subscriber))
-      (-> state
-          (next-epoch!)
-          (set-context! {:recover-coordinates (sub/get-recover subscriber)
-                         :recovered? false
-                         :barrier-opts {:recover-coordinates (sub/get-recover subscriber)
-                                        :completed? false}
-                         :src-peers (sub/src-peers subscriber)
-                         :publishers (m/publishers messenger)})
-          (advance))
+      (do
+       ;; calls made before recovery are for segments that will be replayed
+       (some-> (:onyx.core/async-calls (get-event state)) (async-fn/clear!))
+       (-> state
+           (next-epoch!)
+           (set-context! {:recover-coordinates (sub/get-recover subscriber)
+                          :recovered? false
+                          :barrier-opts {:recover-coordinates (sub/get-recover subscriber)
+                                         :completed? false}
+                          :src-peers (sub/src-peers subscriber)
+                          :publishers (m/publishers messenger)})
+           (advance)))
       state)))
 
 (defn poll-recover-output [state]
@@ -456,6 +475,41 @@
         (handle-exception-fn lifecycle action e))
       state)))
 
+(defn task-slice-fn
+  "Returns a fn that runs one iteration of the task run loop each time it is
+   called, for tasks scheduled on a worker pool. The fn returns :progress, or
+   :blocked when the lifecycle could not advance. Once the task falls out of the
+   loop, the final state is put on ch and the fn returns :done. state is a
+   volatile holding the task state, so that it can be handed back if the
+   worker pool stops first."
+  [state handle-exception-fn exception-action-fn ch]
+  (let [{:keys [onyx.core/replica-atom] :as event} (get-event @state)
+        prev-replica-val (volatile! (get-replica @state))]
+    (fn []
+      (try
+        (let [replica-val @replica-atom]
+          (if (and (= replica-val @prev-replica-val)
+                   (not (killed? @state)))
+            (if (advanced? (vreset! state (iteration @state task-iterations)))
+              :progress
+              :blocked)
+            (let [next-state (vreset! state (next-replica! @state replica-val))]
+              (vreset! prev-replica-val replica-val)
+              (if (killed? next-state)
+                (do
+                  (info (:onyx.core/log-prefix event) "Fell out of task lifecycle loop")
+                  (>!! ch next-state)
+                  :done)
+                :progress))))
+        (catch Throwable e
+          (let [lifecycle (get-lifecycle @state)
+                action (if (:kill-job? (ex-data e))
+                         :kill
+                         (exception-action-fn (get-event @state) lifecycle e))]
+            (handle-exception-fn lifecycle action e))
+          (>!! ch @state)
+          :done)))))
+
 (defn instantiate-plugin [{:keys [onyx.core/task-map] :as event}]
   (let [kw (:onyx/plugin task-map)]
     (case (:onyx/language task-map)
@@ -493,12 +547,25 @@
   (map->TaskInformation (select-keys (merge peer task) [:log :job-id :task-id :id])))
 
 (defn build-apply-fn [event]
-  (let [f (:onyx.core/fn event)
-        a-fn (if (:onyx/batch-fn? (:onyx.core/task-map event))
-               transform/apply-fn-batch
-               transform/apply-fn-single)]
-    (fn [state]
-      (transform/apply-fn a-fn f state))))
+  ;; params are resolved when the task starts, as currying them per batch is slow
+  (let [f (->> (transform/curry-params (:onyx.core/fn event) (:onyx.core/params event))
+               (fusion/fuse-fn event))
+        task-map (:onyx.core/task-map event)
+        parallelism (arg-or-default :onyx/fn-parallelism task-map)
+        async-calls (:onyx.core/async-calls event)
+        a-fn (cond (:onyx/batch-fn? task-map)
+                   transform/apply-fn-batch
+
+                   (> parallelism 1)
+                   (transform/apply-fn-parallel parallelism)
+
+                   :else
+                   transform/apply-fn-single)]
+    (if async-calls
+      (fn [state]
+        (async-fn/apply-async-fn async-calls f state))
+      (fn [state]
+        (transform/apply-fn a-fn f state)))))
 
 (defn event->pub-liveness [event]
   (ms->ns (arg-or-default :onyx.peer/publisher-liveness-timeout-ms 
@@ -551,8 +618,8 @@
                    {:lifecycle :lifecycle/read-batch
                     :builder (fn [event] 
                                (if (input-task? event) 
-                                 read-batch/read-input-batch
-                                 read-batch/read-function-batch))}
+                                 (read-batch/read-input-batch event)
+                                 (read-batch/read-function-batch event)))}
                    {:lifecycle :lifecycle/check-publisher-heartbeats
                     :builder (fn [event] 
                                (let [timeout (event->pub-liveness event)] 
@@ -825,6 +892,8 @@
           (.idle idle-strategy 1)
           next-state)
         (do (.idle idle-strategy 0)
+            ;; blocked lifecycles may be waiting on downstream readiness or epochs
+            (m/poll-heartbeats messenger)
             (heartbeat! next-state)))))
   (advance [this]
     (let [new-idx ^int (unchecked-add-int idx 1)]
@@ -859,6 +928,18 @@
   (int (or (lookup-lifecycle-idx lifecycles :lifecycle/before-batch)
            (lookup-lifecycle-idx lifecycles :lifecycle/read-batch))))
 
+(defn task-idle-strategy
+  "The idle strategy used when a lifecycle is blocked. Latency critical tasks
+   can spin, while bulk tasks back off further or sleep."
+  ^IdleStrategy [task-map peer-config]
+  (let [min-sleep-ns (arg-or-default :onyx.peer/idle-min-sleep-ns peer-config)
+        max-sleep-ns (arg-or-default :onyx.peer/idle-max-sleep-ns peer-config)]
+    (case (arg-or-default :onyx/idle-strategy task-map)
+      :busy-spin (BusySpinIdleStrategy.)
+      :yielding (YieldingIdleStrategy.)
+      :backoff (BackoffIdleStrategy. 5 5 min-sleep-ns max-sleep-ns)
+      :sleeping (SleepingIdleStrategy. max-sleep-ns))))
+
 (defn new-state-machine [event peer-config messenger-group coordinator]
   (let [{:keys [onyx.core/input-plugin onyx.core/output-plugin onyx.core/monitoring onyx.core/id]} event
         {:keys [replica-version] :as base-replica} (onyx.log.replica/starting-replica peer-config)
@@ -873,10 +954,10 @@
         start-idx recover-idx
         heartbeat-ns (ms->ns (arg-or-default :onyx.peer/heartbeat-ms peer-config))
         messenger (m/build-messenger peer-config messenger-group monitoring id)
-        idle-strategy (BackoffIdleStrategy. 5
-                                            5
-                                            (arg-or-default :onyx.peer/idle-min-sleep-ns peer-config)
-                                            (arg-or-default :onyx.peer/idle-max-sleep-ns peer-config))
+        ;; pooled tasks must not park the worker they share, the pool idles instead
+        idle-strategy (if (pos? (arg-or-default :onyx.peer/worker-pool-size peer-config))
+                        (NoOpIdleStrategy.)
+                        (task-idle-strategy (:onyx.core/task-map event) peer-config))
         window-states (c/event->windows-states event)]
     (->TaskStateMachine monitoring
                         (ms->ns (arg-or-default :onyx.peer/subscriber-liveness-timeout-ms peer-config))
@@ -894,8 +975,18 @@
               (not (start-lifecycle? event start-fn)))
     (Thread/sleep (arg-or-default :onyx.peer/peer-not-ready-back-off opts))))
 
-(defn start-task-lifecycle! [state handle-exception-fn exception-action-fn]
-  (thread (run-task-lifecycle! state handle-exception-fn exception-action-fn)))
+(defn start-task-lifecycle! [state worker-pool handle-exception-fn exception-action-fn]
+  (if (wp/pooled? worker-pool)
+    (let [ch (promise-chan)
+          state (volatile! state)]
+      (wp/submit! worker-pool 
+                  (task-slice-fn state handle-exception-fn exception-action-fn ch)
+                  (fn []
+                    (warn (:onyx.core/log-prefix (get-event @state)) 
+                          "Worker pool stopped before the task fell out of its lifecycle loop")
+                    (>!! ch @state)))
+      ch)
+    (thread (run-task-lifecycle! state handle-exception-fn exception-action-fn))))
 
 (defn take-final-state!! [component]
   (<!! (:task-lifecycle-ch component)))
@@ -938,6 +1029,7 @@
           :onyx.core/resume-point resume-point
           :onyx.core/replica-atom replica
           :onyx.core/log-prefix log-prefix}
+         c/async-fn->event-map
          c/task-params->event-map
          c/flow-conditions->event-map
          c/task->event-map)))
@@ -954,7 +1046,7 @@
 (defrecord TaskLifeCycle
            [id log messenger-group job-id task-id replica group-ch log-prefix
             kill-flag outbox-ch completion-ch peer-group opts task-kill-flag
-            scheduler-event task-information replica-origin]
+            scheduler-event task-information replica-origin worker-pool]
 
   component/Lifecycle
   (start [component]
@@ -995,7 +1087,7 @@
                                     :onyx.core/storage storage)
                        state (new-state-machine event opts messenger-group coordinator)
                        _ (info log-prefix "Enough peers are active, starting the task")
-                       task-lifecycle-ch (start-task-lifecycle! state handle-exception-fn exception-action-fn)]
+                       task-lifecycle-ch (start-task-lifecycle! state worker-pool handle-exception-fn exception-action-fn)]
                     (s/validate os/Event event)
                     (assoc component
                            :event event
@@ -2,7 +2,8 @@
   (:require [onyx.types :refer [->Result ->Results]]
             [taoensso.timbre :refer [tracef trace]]
             [onyx.protocol.task-state :refer :all]
-            [clj-tuple :as t]))
+            [clj-tuple :as t])
+  (:import [java.util.concurrent ForkJoinPool ForkJoinTask Callable]))
 
 (defn collect-next-segments [f input]
   (let [segments (try (f input)
@@ -15,13 +16,46 @@
   (assoc
    event
    :onyx.core/results
-    (->Results (doall
-                 (map
-                   (fn [leaf]
-                     (->Result leaf (collect-next-segments f leaf)))
-                   batch))
-               nil
-               nil)))
+   (->Results (persistent!
+               (reduce (fn [results leaf]
+                         (conj! results (->Result leaf (collect-next-segments f leaf))))
+                       (transient [])
+                       batch))
+              nil
+              nil)))
+
+(defonce fn-pool
+  (delay (ForkJoinPool. (.availableProcessors (Runtime/getRuntime)))))
+
+(defn apply-fn-parallel
+  "Splits the batch into up to parallelism slices, and applies f to each slice
+   on the shared fork/join pool. The task thread applies f to the first slice,
+   and results are joined in batch order."
+  [parallelism]
+  (fn [f {:keys [onyx.core/batch] :as event}]
+    (let [batch (vec batch)
+          n (count batch)]
+      (if (< n 2)
+        (apply-fn-single f event)
+        (let [slice-size (quot (+ n (dec parallelism)) parallelism)
+              apply-slice (fn [slice]
+                            (mapv (fn [leaf]
+                                    (->Result leaf (collect-next-segments f leaf)))
+                                  slice))
+              [first-slice & slices] (partition-all slice-size batch)
+              ^ForkJoinPool pool @fn-pool
+              tasks (mapv (fn [slice]
+                            (.submit pool ^Callable (fn [] (apply-slice slice))))
+                          slices)
+              first-results (apply-slice first-slice)]
+          (assoc
+           event
+           :onyx.core/results
+           (->Results (into first-results
+                            (mapcat (fn [^ForkJoinTask task] (.join task)))
+                            tasks)
+                      nil
+                      nil)))))))
 
 (defn collect-next-segments-batch [f input]
   (try (f input)
@@ -42,30 +76,21 @@
     (assoc
      event
      :onyx.core/results
-     (->Results (doall
-                 (map
-                  (fn [leaf output]
-                    (let [segments (if (sequential? output) output (t/vector output))]
-                      (->Result leaf segments)))
-                  batch
-                  batch-results))
+     (->Results (mapv
+                 (fn [leaf output]
+                   (let [segments (if (sequential? output) output (t/vector output))]
+                     (->Result leaf segments)))
+                 batch
+                 batch-results)
                 nil
                 nil))))
 
 (defn curry-params [f params]
   (reduce partial f params))
 
-(defn apply-fn [a-fn f state]
+(defn apply-fn
+  "Applies g, the task's fn with its params already curried, to the batch."
+  [a-fn g state]
   (-> state
-      (set-event! (let [event (get-event state) 
-                        ;; dynamic param currying is pretty slow
-                        ;; maybe we can make a separate task-map option to turn this on
-                        g (curry-params f (:onyx.core/params event))
-                        rets (a-fn g event)]
-                    ; (tracef "[%s / %s] Applied fn to %s segments, returning %s new segments"
-                    ;         (:onyx.core/id rets)
-                    ;         (:onyx.core/lifecycle-id rets)
-                    ;         (count (:onyx.core/batch event))
-                    ;         (count (mapcat :leaves (:tree (:onyx.core/results rets)))))
-                    rets))
+      (set-event! (a-fn g (get-event state)))
       (advance)))
@@ -12,7 +12,7 @@
 (defrecord VirtualPeer [group-ch outbox-ch peer-config task-component-fn id]
   component/Lifecycle
 
-  (start [{:keys [group-id logging-config monitoring messenger-group log]
+  (start [{:keys [group-id logging-config monitoring messenger-group worker-pool log]
            :as component}]
     (taoensso.timbre/info (format "Starting Virtual Peer %s" id))
     (let [peer-site (m/get-peer-site peer-config)
@@ -23,6 +23,7 @@
                  :replica (atom {})
                  :log log
                  :messenger-group messenger-group
+                 :worker-pool worker-pool
                  :monitoring monitoring
                  :opts peer-config
                  :outbox-ch outbox-ch
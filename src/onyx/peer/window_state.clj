@@ -28,6 +28,7 @@
   (recover-state [this dumped])
   (aggregate-state [this])
   (apply-extents [this])
+  (apply-extents-segment [this])
   (apply-event [this])
   (export-state [this])
   (play-trigger-entry [this entry])
@@ -221,10 +222,14 @@
             (map-indexed list trigger-states)))
 
   (extent-state [this]
-    (let [{:keys [extent segment]} state-event
+    (let [{:keys [extent segment combined]} state-event
           extent-state (->> (get state extent)
                             (default-state-value init-fn window))
-          transition-entry (create-state-update window extent-state segment)
+          ;; partials from upstream combiners are merged, as they already
+          ;; hold the aggregate of the segments they were built from
+          transition-entry (if combined
+                             (super-agg-fn window extent-state (:state combined))
+                             (create-state-update window extent-state segment))
           new-extent-state (apply-state-update window extent-state transition-entry)
           new-state-event (-> state-event
                               (assoc :next-extent-state new-extent-state)
@@ -240,6 +245,11 @@
     (doall (map state-event->log-entry event-results)))
 
   (apply-extents [this]
+    (if-let [combined (:combined state-event)]
+      (assoc this :state-event (assoc state-event :extents [(:extent combined)]))
+      (apply-extents-segment this)))
+
+  (apply-extents-segment [this]
     (let [{:keys [segment]} state-event
           segment-coerced (we/uniform-units window-extension segment)
           state* (we/speculate-update window-extension state segment-coerced)
@@ -278,7 +288,7 @@
 
 (defn process-segment
   [state state-event]
-  (let [{:keys [grouping-fn onyx.core/monitoring onyx.core/results] :as event} (get-event state)
+  (let [{:keys [grouping-fn onyx.core/monitoring onyx.core/results onyx.core/partials] :as event} (get-event state)
         grouped? (not (nil? grouping-fn))
         state-event* (assoc state-event :grouped? grouped?)
         windows-state (get-windows-state state)
@@ -289,6 +299,14 @@
                             (fire-state-event windows-state* state-event**)))
                         windows-state
                         (mapcat :leaves (:tree results)))
+        updated-states (reduce
+                        (fn [windows-state* combined]
+                          (fire-state-event windows-state*
+                                            (assoc state-event* 
+                                                   :combined combined
+                                                   :group-key (:group-key combined))))
+                        updated-states
+                        partials)
         emitted (doall (mapcat (comp deref :emitted) updated-states))]
     (run! (fn [w] (reset! (:emitted w) [])) windows-state)
     (-> state 
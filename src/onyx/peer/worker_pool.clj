@@ -0,0 +1,212 @@
+(ns ^:no-doc onyx.peer.worker-pool
+  "A fixed pool of worker threads, shared by the virtual peers in a peer group.
+   Each worker cooperatively runs the task state machines in its run queue one
+   slice at a time, rather than each task owning a thread that parks whenever
+   it is blocked. A machine stays on the worker it was submitted to, unless an
+   idle worker steals it. Machines that were blocked on their last slice are
+   backed off, so that machines with work to do get the worker first."
+  (:require [com.stuartsierra.component :as component]
+            [metrics.core :refer [remove-metric]]
+            [metrics.gauges :as g]
+            [onyx.static.default-vals :refer [arg-or-default]]
+            [taoensso.timbre :refer [info warn error]])
+  (:import [java.util.concurrent ConcurrentLinkedDeque]
+           [java.util.concurrent.atomic AtomicLong]
+           [org.agrona.concurrent IdleStrategy BackoffIdleStrategy]))
+
+(defprotocol PScheduled
+  (ready? [this now-ns])
+  (run-slice! [this now-ns]
+    "Runs one slice of the machine. Returns :progress, :blocked, or :done once
+     the machine must not be run again.")
+  (abandon! [this]
+    "Called for machines that were still scheduled when the pool stopped."))
+
+(deftype Scheduled [run-fn abandon-fn ^long min-backoff-ns ^long max-backoff-ns
+                    ^:unsynchronized-mutable ^long backoff-ns
+                    ^:unsynchronized-mutable ^long next-run-ns]
+  PScheduled
+  (ready? [this now-ns]
+    (>= (long now-ns) next-run-ns))
+  (run-slice! [this now-ns]
+    (let [result (run-fn)]
+      (case result
+        :progress (do (set! backoff-ns 0)
+                      (set! next-run-ns 0))
+        :blocked (do (set! backoff-ns (min max-backoff-ns (max min-backoff-ns (* 2 backoff-ns))))
+                     (set! next-run-ns (+ (long now-ns) backoff-ns)))
+        :done nil)
+      result))
+  (abandon! [this]
+    (when abandon-fn
+      (abandon-fn))))
+
+(defn steal
+  "Takes a machine from the tail of another worker's run queue."
+  [^objects queues ^long self]
+  (let [n (alength queues)
+        start (long (rand-int n))]
+    (loop [i 0]
+      (when (< i n)
+        (let [victim (rem (+ start i) n)]
+          (or (when-not (= victim self)
+                (.pollLast ^ConcurrentLinkedDeque (aget queues victim)))
+              (recur (inc i))))))))
+
+(defn run-slice-safe! [scheduled now-ns]
+  (try
+    (run-slice! scheduled now-ns)
+    (catch Throwable t
+      (error t "Uncaught exception running task slice, dropping it from the worker pool.")
+      :done)))
+
+(defn run-worker!
+  "Runs machines from the worker's own run queue, stealing from other workers
+   when it is empty. The worker idles once a full pass over its queue has not
+   advanced any machine."
+  [^objects queues index ^AtomicLong busy-ns ^AtomicLong steals running? ^IdleStrategy idle-strategy]
+  (let [^ConcurrentLinkedDeque own (aget queues index)]
+    (loop [misses 0]
+      (when @running?
+        (let [scheduled (or (.pollFirst own)
+                            (when-let [stolen (steal queues index)]
+                              (.incrementAndGet steals)
+                              stolen))
+              start-ns (System/nanoTime)]
+          (cond (nil? scheduled)
+                (do (.idle idle-strategy 0)
+                    (recur 0))
+
+                (not (ready? scheduled start-ns))
+                (do (.addLast own scheduled)
+                    (if (> (inc misses) (.size own))
+                      (do (.idle idle-strategy 0)
+                          (recur 0))
+                      (recur (inc misses))))
+
+                :else
+                (let [result (run-slice-safe! scheduled start-ns)]
+                  (.addAndGet busy-ns (- (System/nanoTime) start-ns))
+                  (when-not (= :done result)
+                    (.addLast own scheduled))
+                  (if (= :progress result)
+                    (do (.reset idle-strategy)
+                        (recur 0))
+                    (if (> (inc misses) (.size own))
+                      (do (.idle idle-strategy 0)
+                          (recur 0))
+                      (recur (inc misses)))))))))))
+
+(defn join-workers!
+  "Waits up to timeout-ms in total for the workers to finish their current
+   slices, then interrupts those that are still running a slice, and waits for
+   them up to timeout-ms again. Returns the threads that are still alive."
+  [threads timeout-ms]
+  (let [deadline (+ (System/currentTimeMillis) (long timeout-ms))]
+    (run! (fn [^Thread t]
+            (.join t (max 1 (- deadline (System/currentTimeMillis)))))
+          threads)
+    (let [stuck (filterv #(.isAlive ^Thread %) threads)]
+      (run! #(.interrupt ^Thread %) stuck)
+      (run! #(.join ^Thread % (long timeout-ms)) stuck)
+      (filterv #(.isAlive ^Thread %) stuck))))
+
+(defn drain-queues!
+  "Abandons the machines left in the run queues, so that they can hand back
+   their final state."
+  [^objects queues]
+  (dotimes [i (alength queues)]
+    (let [^ConcurrentLinkedDeque queue (aget queues i)]
+      (loop []
+        (when-let [scheduled (.pollFirst queue)]
+          (try
+            (abandon! scheduled)
+            (catch Throwable t
+              (error t "Exception abandoning task on worker pool stop.")))
+          (recur))))))
+
+(defn utilization-gauge-fn
+  "Percentage of wall clock time the worker spent running slices since the
+   gauge was last read."
+  [^AtomicLong busy-ns]
+  (let [last-sample (atom [(.get busy-ns) (System/nanoTime)])]
+    (fn []
+      (let [busy (.get busy-ns)
+            now (System/nanoTime)
+            [last-busy last-ns] @last-sample
+            elapsed (- now (long last-ns))]
+        (reset! last-sample [busy now])
+        (if (pos? elapsed)
+          (double (/ (* 100 (- busy (long last-busy))) elapsed))
+          0.0)))))
+
+(defn pooled? [worker-pool]
+  (boolean (:queues worker-pool)))
+
+(defn submit!
+  "Schedules run-fn on the least loaded worker. run-fn is called repeatedly,
+   and returns :progress, :blocked, or :done once it must not be called again.
+   abandon-fn is called instead if the pool stops before run-fn is done."
+  [{:keys [queues peer-config]} run-fn abandon-fn]
+  (let [^ConcurrentLinkedDeque queue (apply min-key #(.size ^ConcurrentLinkedDeque %) queues)]
+    (.addLast queue (->Scheduled run-fn abandon-fn
+                                 (arg-or-default :onyx.peer/idle-min-sleep-ns peer-config)
+                                 (arg-or-default :onyx.peer/idle-max-sleep-ns peer-config)
+                                 0 0))))
+
+(defrecord WorkerPool [peer-config]
+  component/Lifecycle
+  (start [{:keys [monitoring] :as component}]
+    (let [n-workers (arg-or-default :onyx.peer/worker-pool-size peer-config)]
+      (if (pos? n-workers)
+        (let [_ (info "Starting worker pool with" n-workers "workers")
+              running? (atom true)
+              queues (object-array (repeatedly n-workers #(ConcurrentLinkedDeque.)))
+              busy (vec (repeatedly n-workers #(AtomicLong.)))
+              steals (vec (repeatedly n-workers #(AtomicLong.)))
+              reg (:registry monitoring)
+              metric-names (when reg
+                             (vec (mapcat (fn [i]
+                                            (let [tag ["peer-group" "worker-pool" (str "worker-" i)]
+                                                  ^ConcurrentLinkedDeque queue (aget queues i)
+                                                  ^AtomicLong worker-steals (steals i)]
+                                              (g/gauge-fn reg (conj tag "utilization-percent")
+                                                          (utilization-gauge-fn (busy i)))
+                                              (g/gauge-fn reg (conj tag "tasks") (fn [] (.size queue)))
+                                              (g/gauge-fn reg (conj tag "steals") (fn [] (.get worker-steals)))
+                                              [(conj tag "utilization-percent")
+                                               (conj tag "tasks")
+                                               (conj tag "steals")]))
+                                          (range n-workers))))
+              min-sleep-ns (arg-or-default :onyx.peer/idle-min-sleep-ns peer-config)
+              max-sleep-ns (arg-or-default :onyx.peer/idle-max-sleep-ns peer-config)
+              threads (mapv (fn [i]
+                              (doto (Thread. ^Runnable
+                                             (fn []
+                                               (run-worker! queues i (busy i) (steals i) running?
+                                                            (BackoffIdleStrategy. 5 5 min-sleep-ns max-sleep-ns)))
+                                             (str "onyx-worker-" i))
+                                (.setDaemon true)
+                                (.start)))
+                            (range n-workers))]
+          (assoc component
+                 :queues queues
+                 :running? running?
+                 :threads threads
+                 :metric-names metric-names))
+        component)))
+  (stop [{:keys [running? threads queues metric-names monitoring] :as component}]
+    (when running?
+      (info "Stopping worker pool")
+      (reset! running? false)
+      (let [stuck (join-workers! threads (arg-or-default :onyx.peer/stop-task-timeout-ms peer-config))]
+        (when (seq stuck)
+          (warn "Worker pool threads did not stop, the tasks they were running are abandoned."
+                {:threads (mapv #(.getName ^Thread %) stuck)})))
+      (drain-queues! queues)
+      (when-let [reg (:registry monitoring)]
+        (run! #(remove-metric reg %) metric-names)))
+    (assoc component :queues nil :running? nil :threads nil :metric-names nil)))
+
+(defn worker-pool [peer-config]
+  (->WorkerPool peer-config))
@@ -8,66 +8,159 @@
             [onyx.peer.constants :refer [load-balance-slot-id]]
             [onyx.peer.grouping :as g]
             [onyx.messaging.aeron.utils :refer [max-message-length]]
+            [onyx.messaging.aeron.short-circuit :as sc]
+            [onyx.messaging.direct-buffer-output :refer [direct-buffer-output]]
+            [onyx.messaging.encoding-cache :as ec]
+            [onyx.messaging.chunking :as ch]
+            [onyx.messaging.load-balance :as lb]
+            [onyx.windowing.combiner :as cb]
+            [onyx.messaging.protocols.segment-codec :as codec]
+            [onyx.messaging.segment-codec]
+            [onyx.static.planning :refer [find-task]]
+            [onyx.static.default-vals :refer [arg-or-default]]
             [net.cgrand.xforms :as x]
             [onyx.plugin.protocols :as p]
             [onyx.protocol.task-state :refer :all]
             [clj-tuple :as t])
   (:import [org.agrona.concurrent UnsafeBuffer IdleStrategy BackoffIdleStrategy]
+           [java.util ArrayDeque]
+           [com.codahale.metrics Histogram]
            [onyx.serialization MessageEncoder MessageDecoder MessageEncoder$SegmentsEncoder]))
 
-(defn offer-segments [replica-version epoch ^MessageEncoder encoder buffer batch publisher]
+(defn offer-segments 
+  "Encodes as many segments as fit in a single message and offers it to the
+   publisher. A segment that does not fit in a message by itself is sent in
+   chunks. Returns the number of segments sent, or 0 if the offer failed."
+  [replica-version epoch ^MessageEncoder encoder buffer output segment-codec segments publisher 
+   write-batch-bytes write-batch-size ^Histogram frame-fill chunker]
   (let [encoder (-> encoder
                     ;; offset by 1 byte, as message type is encoded
                     (.wrap buffer 1)
-                    (.replicaVersion replica-version)) 
-        length (sz/add-segment-payload! encoder batch)] 
-    (let [encoder (.destId encoder (pub/short-id publisher))
-          ret (pub/offer! publisher buffer (inc length) epoch)]
-      (debug "Offer segment" [:ret ret :batch batch :pub (pub/info publisher)])
-      (if (neg? ret)
-        0 
-        length))))
+                    (.replicaVersion replica-version)
+                    (.destId (pub/short-id publisher))) 
+        n-encoded (try
+                   (sz/encode-segments! encoder segment-codec output segments 0 
+                                        write-batch-bytes write-batch-size)
+                   (catch clojure.lang.ExceptionInfo e
+                     (if (sz/segment-too-large? e) -1 (throw e))))]
+    (if (neg? n-encoded)
+      (ch/offer-chunked! chunker replica-version epoch segment-codec output (first segments) publisher)
+      (let [length (inc (.encodedLength encoder))
+            ret (pub/offer! publisher buffer length epoch)]
+        (debug "Offer segment" [:ret ret :segments n-encoded :pub (pub/info publisher)])
+        (if (neg? ret)
+          0 
+          (do (when frame-fill 
+                (.update frame-fill (quot (* 100 length) write-batch-bytes)))
+              n-encoded))))))
+
+(defn offer-short-circuit
+  "Hands the whole batch to a subscriber in the local peer group, without
+   serializing it. Returns the number of segments sent, or 0 if the offer failed."
+  [replica-version epoch segments publisher]
+  (let [batch (sc/->ShortCircuitBatch replica-version (pub/short-id publisher) segments)
+        ret (pub/offer-short-circuit! publisher batch epoch)]
+    (debug "Offer short circuit" [:ret ret :segments (count segments) :pub (pub/info publisher)])
+    (if (neg? ret)
+      0
+      (count segments))))
 
 ;; TODO: split out destinations for retry, may need to switch destinations, can
 ;; do every thing in a single offer.
-;; TODO: be smart about sending messages to multiple co-located tasks
-(defn send-messages [messenger ^MessageEncoder encoder buffer prepared]
+(defn send-messages [messenger ^MessageEncoder encoder buffer output prepared 
+                     write-batch-bytes write-batch-size frame-fill chunker]
   (let [replica-version (m/replica-version messenger)
         epoch (m/epoch messenger)] 
     (loop [batches prepared]
-      (if-let [[pub batch] (first batches)] 
-        (let [encoder (.wrap encoder buffer 1)
-              ret (offer-segments replica-version epoch encoder buffer batch pub)]
-          (if (pos? ret)
-            (recur (rest batches))
-            batches))
-        nil))))
+      (if-let [[pub segments segment-codec] (first batches)] 
+        (let [sent (if (pub/short-circuit? pub)
+                     (offer-short-circuit replica-version epoch segments pub)
+                     (offer-segments replica-version epoch encoder buffer output segment-codec 
+                                     segments pub write-batch-bytes write-batch-size frame-fill chunker))]
+          (cond (zero? sent)
+                batches
 
-(defn partition-xf [publisher write-batch-size]
-  ;; Ideally, write batching would be in terms of numbers of bytes. 
-  ;; We should serialize message by message ahead of time until we hit the cut-off point.
-  ;; Output batch size should also be capped at the batch size of the downstream task.
-  (comp (map first)
-        (partition-all write-batch-size)
-        (map (fn [segments]
-               (list publisher segments)))))
+                (= sent (count segments))
+                (recur (rest batches))
+
+                :else
+                ;; segments that didn't fit are re-encoded into the next message
+                (recur (cons (list pub (subvec segments sent) segment-codec) 
+                             (rest batches)))))
+        nil))))
 
-(defn add-segment [^java.util.ArrayList flattened segment event result get-pub-fn]
+(defn add-segment [^java.util.ArrayList flattened cache combiners segment event result get-pub-fn]
   (let [routes (r/route-data event result segment)
-        segment* (r/flow-conditions-transform segment routes event)]
-    (run! (fn [route]
-            (.add flattened 
-                  (list segment* 
-                        (get-pub-fn segment* route))))
-          (:flow routes))))
-
-(deftype MessengerOutput [^:unsynchronized-mutable buffered ^MessageEncoder encoder 
-                          ^UnsafeBuffer buffer ^long write-batch-size 
-                          ^java.util.ArrayList flattened]
+        segment* (r/flow-conditions-transform segment routes event)
+        n-encoded (reduce (fn [n route]
+                            (if-let [combiner (get combiners route)]
+                              (do (cb/combine! combiner segment*)
+                                  n)
+                              (let [pub (get-pub-fn segment* route)]
+                                (.add flattened (list segment* pub route))
+                                (if (pub/short-circuit? pub) n (inc n)))))
+                          0
+                          (:flow routes))]
+    ;; segments that will be serialized for more than one publisher
+    ;; are encoded once, and then copied from the cache
+    (when (> n-encoded 1)
+      (ec/fan-out! cache segment*))))
+
+(defn group-pub [dest-pubs group-key]
+  (get dest-pubs (mod (hash group-key) (count dest-pubs))))
+
+(defn add-partials
+  "Partials are routed by their group key, to the peer that would have
+   received the raw segments."
+  [^java.util.ArrayList flattened combiners messenger]
+  (run! (fn [[dst-task-id combiner]]
+          (let [dest-pubs (m/task->publishers messenger dst-task-id)]
+            (run! (fn [[group-key partial]]
+                    (.add flattened (list partial (group-pub dest-pubs group-key) dst-task-id)))
+                  (cb/drain! combiner))))
+        combiners))
+
+(defprotocol PPipelined
+  (flush-pending! [this messenger]
+    "Sends every prepared batch that has not been written yet. Returns true once
+     all of them have been written."))
+
+(defn write-pending!
+  "Sends the pending batches, oldest first, until a publisher back pressures.
+   Batches prepared under an older replica version are dropped, as their
+   publishers no longer exist."
+  [^ArrayDeque pending messenger cache encoder buffer output write-batch-bytes write-batch-size frame-fill chunker]
+  (let [replica-version (m/replica-version messenger)]
+    (loop []
+      (when-let [[rv prepared marks] (.peekFirst pending)]
+        (if (not= rv replica-version)
+          (do (.pollFirst pending)
+              (recur))
+          (let [_ (when cache (ec/use-marks! cache marks))
+                remaining (send-messages messenger encoder buffer output prepared 
+                                         write-batch-bytes write-batch-size frame-fill chunker)]
+            (.pollFirst pending)
+            (if (empty? remaining)
+              (recur)
+              (.addFirst pending [rv remaining marks]))))))))
+
+;; Prepared batches are queued in pending as [replica-version prepared marks],
+;; where marks are the batch's fanned out segments in the encoding cache.
+;; Up to pipeline-depth - 1 batches may still be waiting to be written while
+;; the task reads and processes the next one.
+(deftype MessengerOutput [^ArrayDeque pending ^long pipeline-depth ^MessageEncoder encoder 
+                          ^UnsafeBuffer buffer output task->codec ^long write-batch-size ^long write-batch-bytes
+                          ^Histogram frame-fill ^java.util.ArrayList flattened cache balancer combiners chunker]
   p/Plugin
   (start [this event] this)
   (stop [this event] this)
 
+  PPipelined
+  (flush-pending! [this messenger]
+    (write-pending! pending messenger cache encoder buffer output write-batch-bytes write-batch-size 
+                    frame-fill chunker)
+    (.isEmpty pending))
+
   p/Checkpointed
   (recover! [this _ _] this)
   (checkpoint [_])
@@ -76,50 +169,87 @@
   p/BarrierSynchronization
   (synced? [this _]
     true)
-  (completed? [this] (empty? buffered))
+  (completed? [this] (.isEmpty pending))
 
   p/Output
   (prepare-batch [this {:keys [onyx.core/results onyx.core/triggered task->group-by-fn] :as event} 
                   replica messenger]
     (let [;; generate this on each new replica / messenger
-          get-pub-fn (if (empty? task->group-by-fn)
-                       (fn [segment dst-task-id]
-                         (rand-nth (m/task->publishers messenger dst-task-id)))            
-                       (fn [segment dst-task-id]
-                         (let [group-fn (task->group-by-fn dst-task-id) 
-                               hsh (hash (group-fn segment))
-                               dest-pubs (m/task->publishers messenger dst-task-id)]
-                           (get dest-pubs (mod hsh (count dest-pubs))))))
+          get-pub-fn (fn [segment dst-task-id]
+                       (let [dest-pubs (m/task->publishers messenger dst-task-id)]
+                         (if-let [group-fn (get task->group-by-fn dst-task-id)]
+                           (group-pub dest-pubs (group-fn segment))
+                           (lb/choose balancer dest-pubs))))
+          _ (ec/clear! cache)
+          _ (lb/next-batch! balancer)
           _ (run! (fn [{:keys [leaves] :as result}]
                     (run! (fn [seg]
-                            (add-segment flattened seg event result get-pub-fn))
+                            (add-segment flattened cache combiners seg event result get-pub-fn))
                           leaves))
                   (:tree results))
           _ (run! (fn [seg] 
-                    (add-segment flattened seg event {:leaves [seg]} get-pub-fn))
+                    (add-segment flattened cache combiners seg event {:leaves [seg]} get-pub-fn))
                   triggered)
+          _ (add-partials flattened combiners messenger)
           xf (comp (x/by-key second (x/into []))
-                   (mapcat (fn [[pub coll]]
-                             (sequence (partition-xf pub write-batch-size) 
-                                       coll))))
+                   (map (fn [[pub coll]]
+                          (list pub 
+                                (mapv first coll) 
+                                (task->codec (nth (first coll) 2))))))
           final-output (sequence xf flattened)]
       (.clear ^java.util.ArrayList flattened)
-      (set! buffered final-output)
+      (let [marks (ec/take-marks! cache)]
+        (when (seq final-output)
+          (.addLast pending [(m/replica-version messenger) final-output marks])))
       true))
 
   (write-batch [this event _ messenger]
-    (let [remaining (send-messages messenger encoder buffer buffered)]
-      (if (empty? remaining)
-        (do (set! buffered nil)
-            true)
-        (do (set! buffered remaining)
-            false)))))
-
-(defn new-messenger-output [{:keys [onyx.core/task-map] :as event}]
+    (write-pending! pending messenger cache encoder buffer output write-batch-bytes write-batch-size 
+                    frame-fill chunker)
+    (< (.size pending) pipeline-depth)))
+
+(def shareable-codecs #{:nippy :flat-map})
+
+(defn codec-key
+  "Tasks with the same built in codec configuration share a codec, so that
+   segments routed to several of them hit the encoding cache. Codecs from
+   extensions may depend on any task map key, so they are never shared."
+  [task-map]
+  (let [codec-name (get task-map :onyx/segment-codec :nippy)]
+    (if (shareable-codecs codec-name)
+      [codec-name (:onyx/segment-schema task-map)]
+      (:onyx/name task-map))))
+
+(defn egress-codecs 
+  "Codecs are chosen by the receiving task, so that its subscriber can decode 
+   every segment it is sent."
+  [{:keys [onyx.core/catalog onyx.core/serialized-task]} cache]
+  (let [task-maps (map #(find-task catalog %) (:egress-tasks serialized-task))
+        codecs (into {}
+                     (map (fn [[k [task-map]]]
+                            [k (ec/caching-codec cache (codec/build-codec task-map))]))
+                     (group-by codec-key task-maps))]
+    (into {}
+          (map (fn [task-map]
+                 [(:onyx/name task-map) (codecs (codec-key task-map))]))
+          task-maps)))
+
+(defn new-messenger-output [{:keys [onyx.core/task-map onyx.core/monitoring onyx.core/catalog
+                                    onyx.core/serialized-task onyx.core/task-information] :as event}]
   (let [write-batch-size (or (:onyx/batch-write-size task-map) (:onyx/batch-size task-map))
+        ;; frames can never exceed the term-length/8 limit
+        write-batch-bytes (min (or (:onyx/batch-write-bytes task-map) (max-message-length))
+                               (max-message-length))
         bs (byte-array (max-message-length)) 
         buffer (UnsafeBuffer. bs)
-        tmp-storage (java.util.ArrayList. 2000)]
+        tmp-storage (java.util.ArrayList. 2000)
+        cache (ec/new-encoding-cache monitoring)
+        balancer (lb/new-load-balancer (arg-or-default :onyx/load-balance task-map) monitoring)
+        combiners (cb/egress-combiners catalog (:windows task-information) (:egress-tasks serialized-task))]
     ;; set message type in buffer early, as we will be re-using the buffer
     (sz/put-message-type buffer 0 sz/message-id)
-    (->MessengerOutput nil (MessageEncoder.) buffer (long write-batch-size) tmp-storage)))
+    (->MessengerOutput (ArrayDeque.) (long (arg-or-default :onyx/pipeline-depth task-map))
+                       (MessageEncoder.) buffer (direct-buffer-output) (egress-codecs event cache)
+                       (long write-batch-size) (long write-batch-bytes)
+                       (:frame-fill-percent monitoring) tmp-storage cache balancer combiners
+                       (ch/new-chunked-sender (max-message-length)))))
@@ -99,3 +99,68 @@
              (conj tasks (create-task task-ids catalog element parent-entries children))))
          []
          sorted-dag)))))
+
+(defn task-parallelism [task-map]
+  (select-keys task-map [:onyx/n-peers :onyx/min-peers :onyx/max-peers]))
+
+(defn fusable-task? 
+  "Function tasks may be fused when they opt in, and nothing about them
+   depends on running as a separate physical task."
+  [{:keys [windows flow-conditions lifecycles]} task-map]
+  (let [task-name (:onyx/name task-map)]
+    (and (= :function (:onyx/type task-map))
+         (:onyx/fuse? task-map)
+         (not (grouping-task? task-map))
+         (not (:onyx/batch-fn? task-map))
+         (not (:onyx/async-fn? task-map))
+         (not= :java (:onyx/language task-map))
+         (not-any? #(= task-name (:window/task %)) windows)
+         (not-any? #(or (= task-name (:flow/from %))
+                        (= task-name (:flow/to %))
+                        (and (coll? (:flow/to %)) (some #{task-name} (:flow/to %))))
+                   flow-conditions)
+         (not-any? #(= task-name (:lifecycle/task %)) lifecycles))))
+
+(defn fusable-edge? [job g [from to]]
+  (let [from-task (find-task (:catalog job) from)
+        to-task (find-task (:catalog job) to)]
+    (and (fusable-task? job from-task)
+         (fusable-task? job to-task)
+         (= #{to} (set (dep/immediate-dependents g from)))
+         (= #{from} (set (dep/immediate-dependencies g to)))
+         (= (task-parallelism from-task) (task-parallelism to-task)))))
+
+(defn fuse-edge 
+  "Fuses the task at the end of edge into the task at its start. The fused
+   task keeps its name, runs the downstream task's fn on each segment it
+   emits, and takes over the downstream task's outgoing edges."
+  [{:keys [catalog workflow] :as job} [from to]]
+  (let [to-task (find-task catalog to)]
+    (assoc job
+           :catalog (into []
+                          (keep (fn [task-map]
+                                  (condp = (:onyx/name task-map)
+                                    from (update task-map :onyx/fused-tasks 
+                                                 (fnil into []) 
+                                                 (cons (dissoc to-task :onyx/fused-tasks)
+                                                       (:onyx/fused-tasks to-task)))
+                                    to nil
+                                    task-map)))
+                          catalog)
+           :workflow (into []
+                           (keep (fn [[a b :as edge]]
+                                   (cond (= edge [from to]) nil
+                                         (= a to) [from b]
+                                         :else edge)))
+                           workflow))))
+
+(defn fuse-tasks
+  "Fuses chains of ungrouped function tasks that set :onyx/fuse? into a single
+   physical task, so that segments pass between them in process rather than
+   being serialized and sent over the network."
+  [job]
+  (loop [job job]
+    (let [g (to-dependency-graph (:workflow job))]
+      (if-let [edge (first (filter #(fusable-edge? job g %) (:workflow job)))]
+        (recur (fuse-edge job edge))
+        job))))
@@ -11,6 +11,7 @@
             [onyx.messaging.aeron.messaging-group]
             [onyx.messaging.aeron.messenger]
             [onyx.peer.peer-group-manager :as pgm]
+            [onyx.peer.worker-pool :as wp]
             [onyx.monitoring.no-op-monitoring]
             [onyx.monitoring.custom-monitoring]
             [onyx.peer.function]
@@ -52,7 +53,7 @@
 
 (def development-components [:monitoring :logging-config :log])
 
-(def peer-group-components [:logging-config :monitoring :query-server :messenger-group :peer-group-manager])
+(def peer-group-components [:logging-config :monitoring :query-server :messenger-group :worker-pool :peer-group-manager])
 
 (def client-components [:monitoring :log])
 
@@ -139,15 +140,16 @@
     :task-lifecycle (component/using (task-lifecycle peer-state task-state) [:task-information])}))
 
 (defn onyx-vpeer-system
-  [group-ch outbox-ch peer-config messenger-group monitoring log group-id vpeer-id]
+  [group-ch outbox-ch peer-config messenger-group worker-pool monitoring log group-id vpeer-id]
    (map->OnyxPeer
     {:group-id group-id
      :messenger-group messenger-group
+     :worker-pool worker-pool
      :logging-config (logging-config/logging-configuration peer-config)
      :monitoring monitoring 
      :virtual-peer (component/using
                     (virtual-peer group-ch outbox-ch log peer-config onyx-task vpeer-id)
-                    [:group-id :messenger-group :monitoring :logging-config])}))
+                    [:group-id :messenger-group :worker-pool :monitoring :logging-config])}))
 
 (defn onyx-peer-group
   [peer-config]
@@ -157,8 +159,9 @@
     :monitoring (component/using (metrics-monitoring/new-monitoring) [:logging-config])
     :messenger-group (component/using (m/build-messenger-group peer-config) [:logging-config])
     :query-server (component/using (qs/query-server peer-config) [:logging-config])
+    :worker-pool (component/using (wp/worker-pool peer-config) [:logging-config :monitoring])
     :peer-group-manager (component/using (pgm/peer-group-manager peer-config onyx-vpeer-system) 
-                                         [:logging-config :monitoring :messenger-group :query-server])}))
+                                         [:logging-config :monitoring :messenger-group :worker-pool :query-server])}))
 
 (defmethod clojure.core/print-method OnyxPeer
   [system ^java.io.Writer writer]
@@ -0,0 +1,123 @@
+(ns ^:no-doc onyx.windowing.combiner
+  "Map side combining for grouped windowed aggregations. Upstream tasks fold
+   the segments they send to a combined task into one partial aggregate per
+   group key and window extent in each batch. The receiving window state
+   merges partials with the aggregation's super aggregation function, rather
+   than aggregating every raw segment."
+  (:require [onyx.peer.grouping :as g]
+            [onyx.static.util :refer [kw->fn]]
+            [onyx.windowing.window-compile :as wc]
+            [onyx.windowing.window-extensions :as we])
+  (:import [java.util HashMap Map$Entry]))
+
+(def partial-key :onyx.windowing/partial)
+
+(def combinable-aggregations
+  #{:onyx.windowing.aggregation/sum
+    :onyx.windowing.aggregation/count
+    :onyx.windowing.aggregation/min
+    :onyx.windowing.aggregation/max
+    :onyx.windowing.aggregation/average})
+
+(defn partial? [segment]
+  (and (map? segment) (contains? segment partial-key)))
+
+(defn split-partials
+  "Splits partials out of a batch read by a combined task. Returns the raw
+   segments and the partials."
+  [batch]
+  (if (some partial? batch)
+    [(filterv (complement partial?) batch)
+     (into [] (comp (filter partial?) (map partial-key)) batch)]
+    [batch nil]))
+
+(defn aggregation-name [window]
+  (let [agg (:window/aggregation window)]
+    (if (sequential? agg) (first agg) agg)))
+
+(defn combined-window
+  "Returns the window that segments sent to task-map are combined for, or nil
+   if the task is not combined. Throws when :onyx/combine? is set on a task
+   that can't be combined."
+  [task-map windows]
+  (when (:onyx/combine? task-map)
+    (let [task-windows (vec (wc/filter-windows windows (:onyx/name task-map)))
+          window (first task-windows)
+          fail (fn [reason]
+                 (throw (ex-info (str "Task " (:onyx/name task-map) " can't be combined, " reason)
+                                 {:task-map task-map :windows task-windows})))]
+      (cond (not (g/grouped-task? task-map))
+            (fail "as it is not grouped.")
+
+            (not= 1 (count task-windows))
+            (fail "as combined tasks must have exactly one window.")
+
+            (= :session (:window/type window))
+            (fail "as session windows merge extents on the receiver.")
+
+            (not (combinable-aggregations (aggregation-name window)))
+            (fail (str "as " (aggregation-name window) " is not a combinable aggregation."))
+
+            (not= :clojure.core/identity (:onyx/fn task-map))
+            (fail "as its :onyx/fn must be :clojure.core/identity.")
+
+            (not= :nippy (get task-map :onyx/segment-codec :nippy))
+            (fail "as partials can only be encoded with the :nippy segment codec.")
+
+            :else
+            window))))
+
+(defprotocol PCombiner
+  (combine! [this segment])
+  (drain! [this]
+    "Returns the partials combined since the last drain, as [group-key partial-segment] pairs."))
+
+(deftype Combiner [window window-id window-extension grouping-fn init-fn
+                   create-state-update apply-state-update ^HashMap partials]
+  PCombiner
+  (combine! [this segment]
+    (let [group-key (grouping-fn segment)
+          extents (we/extents window-extension nil (we/uniform-units window-extension segment))]
+      (run! (fn [extent]
+              (let [k [group-key extent]
+                    state (if (.containsKey partials k)
+                            (.get partials k)
+                            (init-fn window))
+                    entry (create-state-update window state segment)]
+                (.put partials k (apply-state-update window state entry))))
+            extents)))
+  (drain! [this]
+    (let [drained (mapv (fn [^Map$Entry e]
+                          (let [[group-key extent] (.getKey e)]
+                            [group-key
+                             {partial-key {:window-id window-id
+                                           :group-key group-key
+                                           :extent extent
+                                           :state (.getValue e)}}]))
+                        (.entrySet partials))]
+      (.clear partials)
+      drained)))
+
+(defn new-combiner [task-map window]
+  (let [calls (var-get (kw->fn (aggregation-name window)))]
+    (->Combiner window
+                (:window/id window)
+                (-> window
+                    (wc/filter-ns-key-map "window")
+                    ((we/windowing-builder window))
+                    (assoc :window window))
+                (g/task-map->grouping-fn task-map)
+                (wc/resolve-window-init window calls)
+                (:aggregation/create-state-update calls)
+                (:aggregation/apply-state-update calls)
+                (HashMap.))))
+
+(defn egress-combiners
+  "Builds a combiner for each downstream task that has :onyx/combine? set."
+  [catalog windows egress-tasks]
+  (into {}
+        (keep (fn [task-map]
+                (when (and egress-tasks (egress-tasks (:onyx/name task-map)))
+                  (when-let [window (combined-window task-map windows)]
+                    [(:onyx/name task-map) (new-combiner task-map window)]))))
+        catalog))
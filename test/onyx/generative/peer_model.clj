@@ -535,7 +535,7 @@
                   ;; Task overrides
                   tl/take-final-state!! (fn [component] 
                                           @(:holder component))
-                  tl/start-task-lifecycle! (fn [_ _ _] (a/thread :immediate-exit))]
+                  tl/start-task-lifecycle! (fn [_ _ _ _] (a/thread :immediate-exit))]
       (viz/reset-task-monitoring!)
       (let [_ (reset! zookeeper-log [])
             _ (reset! zookeeper-store {})
@@ -32,27 +32,30 @@
                      :onyx.peer/subscriber-liveness-timeout-ms liveness-timeout
                      :onyx.peer/publisher-liveness-timeout-ms liveness-timeout
                      :onyx.messaging/impl :aeron}
+        ;; peer ids sent over Aeron must be UUIDs
+        p-upstream1 (java.util.UUID/randomUUID)
+        p-downstream1 (java.util.UUID/randomUUID)
         media-driver (component/start (em/->EmbeddedMediaDriver peer-config))]
     (try
      (let [peer-group (component/start (m/build-messenger-group peer-config))]
        (try
-        (let [upstream1 (component/start (m/build-messenger peer-config peer-group {} :p-upstream1))]
+        (let [upstream1 (component/start (m/build-messenger peer-config peer-group {} p-upstream1))]
           (try
-           (let [downstream1 (component/start (m/build-messenger peer-config peer-group {} :p-downstream1))
+           (let [downstream1 (component/start (m/build-messenger peer-config peer-group {} p-downstream1))
                  site {:address (:onyx.messaging/bind-addr peer-config)
                        :port (:onyx.messaging/peer-port peer-config)}]
              (try 
               (-> upstream1
                   (m/set-replica-version! 1)
-                  (m/update-publishers [{:src-peer-id :p-upstream1
+                  (m/update-publishers [{:src-peer-id p-upstream1
                                          :dst-task-id :downstream1 
                                          :site site 
-                                         :dst-peer-ids #{:p-downstream1}
+                                         :dst-peer-ids #{p-downstream1}
                                          :slot-id -1}])
                   (m/next-epoch!))
               (-> downstream1
                   (m/set-replica-version! 1)
-                  (m/update-subscriber {:src-peer-id :p-upstream1 
+                  (m/update-subscriber {:src-peer-id p-upstream1 
                                         :dst-task-id :downstream1 
                                         :src-site site
                                         :site site 
@@ -106,12 +109,12 @@
               ;          (.sessionId (:publication (first (m/publishers upstream1))))
               ;          (mapv (fn [i] (.sessionId i)) (.images (:subscription (first (m/subscriptions downstream1))))))
               ; (-> upstream1
-              ;     (m/remove-publication {:src-peer-id :p-upstream1 
+              ;     (m/remove-publication {:src-peer-id p-upstream1 
               ;                            :dst-task-id :downstream1 
               ;                            :site site 
               ;                            :slot-id -1}))
               ; (-> upstream1
-              ;     (m/add-publication {:src-peer-id :p-upstream1 
+              ;     (m/add-publication {:src-peer-id p-upstream1 
               ;                         :dst-task-id :downstream1 
               ;                         :site site 
               ;                         :slot-id -1}))
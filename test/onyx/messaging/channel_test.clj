@@ -0,0 +1,27 @@
+(ns onyx.messaging.channel-test
+  (:require [onyx.messaging.aeron.utils :as autil]
+            [clojure.test :refer [deftest is testing]]))
+
+(def peer-config
+  {:onyx.messaging/external-addr "10.0.0.1"
+   :onyx.messaging/peer-port 40200
+   :onyx.messaging.aeron/media-driver-dir "/dev/shm/aeron-a"})
+
+(deftest dst-channel-test
+  (testing "peer groups sharing a media driver use IPC"
+    (let [site {:address "10.0.0.1" :port 40201 :aeron/media-driver-dir "/dev/shm/aeron-a"}]
+      (is (= autil/ipc-channel (autil/dst-channel peer-config site)))
+      (is (= (autil/ipc-heartbeat-stream-id site) (autil/dst-heartbeat-stream-id peer-config site)))
+      (is (= "aeron:udp?endpoint=10.0.0.1:40201"
+             (autil/dst-channel (assoc peer-config :onyx.messaging.aeron/allow-ipc? false) site)))))
+  (testing "peer groups on other media drivers use UDP"
+    (let [site {:address "10.0.0.1" :port 40201 :aeron/media-driver-dir "/dev/shm/aeron-b"}]
+      (is (= "aeron:udp?endpoint=10.0.0.1:40201" (autil/dst-channel peer-config site)))
+      (is (= autil/heartbeat-stream-id (autil/dst-heartbeat-stream-id peer-config site)))))
+  (testing "peer groups on other hosts use UDP"
+    (let [site {:address "10.0.0.2" :port 40200 :aeron/media-driver-dir "/dev/shm/aeron-a"}]
+      (is (= "aeron:udp?endpoint=10.0.0.2:40200" (autil/dst-channel peer-config site))))))
+
+(deftest ipc-heartbeat-stream-test
+  (is (= (autil/local-ipc-heartbeat-stream-id peer-config)
+         (autil/ipc-heartbeat-stream-id {:address "10.0.0.1" :port 40200 :aeron/media-driver-dir "/dev/shm/aeron-a"}))))
@@ -0,0 +1,55 @@
+(ns onyx.messaging.chunking-test
+  (:require [onyx.messaging.chunking :as ch]
+            [onyx.messaging.serialize :as sz]
+            [onyx.messaging.direct-buffer-input :refer [direct-buffer-input]]
+            [onyx.messaging.direct-buffer-output :refer [direct-buffer-output]]
+            [onyx.messaging.protocols.segment-codec :as codec]
+            [onyx.messaging.segment-codec]
+            [clojure.test :refer [deftest is testing]])
+  (:import [org.agrona.concurrent UnsafeBuffer]))
+
+(def max-length 1000)
+
+(defn chunk-frames [segment]
+  (let [[frame length] (ch/encode-large-frame! (UnsafeBuffer. (byte-array max-length))
+                                               (codec/build-codec {}) (direct-buffer-output) 5 3 segment)
+        chunk-bytes (- max-length ch/chunk-header-length)
+        n-chunks (quot (+ (long length) (dec chunk-bytes)) chunk-bytes)]
+    (for [i (range n-chunks)]
+      (let [buf (UnsafeBuffer. (byte-array max-length))
+            chunk-length (ch/encode-chunk! buf 0 frame length 5 3 i n-chunks chunk-bytes)]
+        [buf chunk-length]))))
+
+(defn assemble [assembler session-id chunks]
+  (reduce (fn [_ [buf length]]
+            (when (zero? (ch/chunk-index buf 0))
+              (ch/start-frame! assembler session-id buf 0))
+            (ch/add-chunk! assembler session-id buf 0 length))
+          nil
+          chunks))
+
+(deftest chunked-segment-roundtrip-test
+  (let [segment {:id 1 :doc (apply str (repeat 5000 "abcdef"))}
+        chunks (chunk-frames segment)
+        [buf] (first chunks)
+        frame (assemble (ch/new-chunk-assembler) 7 chunks)]
+    (is (< 10 (count chunks)))
+    (is (= sz/chunk-id (sz/get-message-type buf 0)))
+    (is (= 5 (sz/get-replica-version buf 1)))
+    (is (= 3 (sz/get-dest-id buf 1 sz/chunk-id)))
+    (is (every? (fn [[_ length]] (<= length max-length)) chunks))
+    (is (= [segment] (persistent! (sz/into-segments! (sz/wrap-message-decoder frame 1) (codec/build-codec {})
+                                                     (direct-buffer-input) (transient [])))))))
+
+(deftest out-of-sequence-chunks-test
+  (let [assembler (ch/new-chunk-assembler)
+        chunks (vec (chunk-frames {:doc (apply str (repeat 2000 "x"))}))]
+    (testing "a frame missing a chunk is dropped"
+      (is (nil? (assemble assembler 7 (concat (take 1 chunks) (drop 2 chunks)))))
+      (is (not (ch/assembling? assembler 7))))
+    (testing "chunks without a first chunk are ignored"
+      (is (nil? (assemble assembler 7 (rest chunks)))))
+    (testing "frames are assembled per session"
+      (assemble assembler 8 (butlast chunks))
+      (is (ch/assembling? assembler 8))
+      (is (some? (assemble assembler 8 [(last chunks)]))))))
@@ -0,0 +1,45 @@
+(ns onyx.messaging.client-pool-test
+  (:require [clojure.test :refer [deftest is testing]]
+            [com.stuartsierra.component :as component]
+            [onyx.messaging.aeron.client-pool :as pool]
+            [onyx.messaging.aeron.messaging-group]
+            [onyx.messaging.protocols.messenger :as m]
+            [onyx.test-helper :refer [load-config]])
+  (:import [io.aeron.exceptions DriverTimeoutException]
+           [java.util.concurrent ConcurrentHashMap]
+           [java.util.concurrent.atomic AtomicBoolean]))
+
+(deftest client-error-handler-test
+  (let [errors (atom [])
+        error-fns (doto (ConcurrentHashMap/newKeySet)
+                    (.add (fn [x] (swap! errors conj x))))
+        failed (AtomicBoolean. false)
+        handler (pool/client-error-handler error-fns failed)]
+    (testing "errors that leave the client usable are not passed on"
+      (.onError handler (ex-info "registration failed" {}))
+      (is (empty? @errors))
+      (is (not (.get failed))))
+    (testing "fatal client errors are passed on, and mark the client as failed"
+      (.onError handler (DriverTimeoutException. "driver timed out"))
+      (is (= 1 (count @errors)))
+      (is (.get failed)))))
+
+(deftest client-outlives-its-leases-test
+  (let [peer-config (:peer-config (load-config))
+        peer-group (component/start (m/build-messenger-group peer-config))
+        client-pool (:client-pool peer-group)
+        error-fn (fn [x])]
+    (try
+     (let [conn (pool/lease! client-pool error-fn)]
+       (pool/release! client-pool error-fn)
+       (testing "the client stays open without leases"
+         (is (= {:clients 1 :leases 0} (select-keys (pool/pool-info client-pool) [:clients :leases]))))
+       (testing "leasing again does not reconnect"
+         (let [connects (:connects (pool/pool-info client-pool))]
+           (is (identical? conn (pool/lease! client-pool error-fn)))
+           (is (= connects (:connects (pool/pool-info client-pool))))
+           (pool/release! client-pool error-fn))))
+     (finally
+      (component/stop peer-group)))
+    (testing "the client is closed when the pool stops"
+      (is (zero? (:clients (pool/pool-info client-pool)))))))
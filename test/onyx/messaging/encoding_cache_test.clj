@@ -0,0 +1,64 @@
+(ns onyx.messaging.encoding-cache-test
+  (:require [onyx.messaging.encoding-cache :as ec]
+            [onyx.messaging.protocols.segment-codec :as codec]
+            [onyx.messaging.segment-codec]
+            [onyx.messaging.direct-buffer-input :as dbi]
+            [onyx.messaging.direct-buffer-output :as dbo]
+            [clojure.test :refer [deftest is testing]])
+  (:import [org.agrona.concurrent UnsafeBuffer]
+           [java.util.concurrent.atomic AtomicLong]))
+
+(defn encode [segment-codec segment]
+  (let [buf (UnsafeBuffer. (byte-array 4096))
+        output (dbo/wrap! (dbo/direct-buffer-output) buf 16 (.capacity buf))
+        _ (codec/encode! segment-codec output segment)
+        end (dbo/position output)]
+    (codec/decode segment-codec (dbi/wrap! (dbi/direct-buffer-input) buf 16 end))))
+
+(deftest fan-out-encoding-test
+  (let [hits (AtomicLong.)
+        misses (AtomicLong.)
+        cache (ec/new-encoding-cache {:serialization-cache-hits hits
+                                      :serialization-cache-misses misses})
+        segment-codec (ec/caching-codec cache (codec/build-codec {}))
+        segment {:id 1 :v "abc"}
+        other {:id 2}]
+    (ec/fan-out! cache segment)
+    (testing "fanned out segments are encoded once"
+      (is (= segment (encode segment-codec segment)))
+      (is (= segment (encode segment-codec segment)))
+      (is (= segment (encode segment-codec segment)))
+      (is (= [2 1] [(.get hits) (.get misses)])))
+    (testing "segments routed to a single publisher bypass the cache"
+      (is (= other (encode segment-codec other)))
+      (is (= [2 1] [(.get hits) (.get misses)])))
+    (testing "the cache is keyed by codec"
+      (let [flat-map-codec (ec/caching-codec cache (codec/build-codec {:onyx/segment-codec :flat-map
+                                                                       :onyx/segment-schema {:id :long :v :string}}))]
+        (is (= segment (encode flat-map-codec segment)))
+        (is (= [2 2] [(.get hits) (.get misses)]))))
+    (testing "the cache is cleared between batches"
+      (ec/clear! cache)
+      (is (not (ec/fanned-out? cache segment))))))
+
+(deftest pipelined-batches-keep-their-marks-test
+  (let [hits (AtomicLong.)
+        cache (ec/new-encoding-cache {:serialization-cache-hits hits})
+        segment-codec (ec/caching-codec cache (codec/build-codec {}))
+        first-segment {:id 1}
+        second-segment {:id 2}
+        _ (ec/fan-out! cache first-segment)
+        first-marks (ec/take-marks! cache)
+        _ (ec/fan-out! cache second-segment)
+        second-marks (ec/take-marks! cache)]
+    (testing "preparing a batch does not drop the marks of batches still to be written"
+      (ec/use-marks! cache first-marks)
+      (is (ec/fanned-out? cache first-segment))
+      (is (not (ec/fanned-out? cache second-segment)))
+      (encode segment-codec first-segment)
+      (encode segment-codec first-segment)
+      (is (= 1 (.get hits))))
+    (testing "each batch is written with its own marks"
+      (ec/use-marks! cache second-marks)
+      (is (ec/fanned-out? cache second-segment))
+      (is (not (ec/fanned-out? cache first-segment))))))
@@ -0,0 +1,51 @@
+(ns onyx.messaging.frame-compression-test
+  (:require [onyx.messaging.aeron.frame-compression :as fc]
+            [onyx.messaging.serialize :as sz]
+            [onyx.messaging.direct-buffer-input :refer [direct-buffer-input]]
+            [onyx.messaging.direct-buffer-output :refer [direct-buffer-output]]
+            [onyx.messaging.protocols.segment-codec :as codec]
+            [onyx.messaging.segment-codec]
+            [clojure.test :refer [deftest is testing]])
+  (:import [org.agrona.concurrent UnsafeBuffer]))
+
+(def max-length 100000)
+
+(defn encode-frame [segments]
+  (let [buf (UnsafeBuffer. (byte-array max-length))
+        encoder (-> (sz/wrap-message-encoder buf 1)
+                    (.replicaVersion 5)
+                    (.destId 3))]
+    (sz/put-message-type buf 0 sz/message-id)
+    (sz/encode-segments! encoder (codec/build-codec {}) (direct-buffer-output) segments 0 max-length 1000)
+    [buf (inc (.encodedLength encoder))]))
+
+(deftest compressed-frame-roundtrip-test
+  (let [segments (vec (for [i (range 200)] {:id i :v (apply str (repeat 20 "abc"))}))
+        [buf length] (encode-frame segments)
+        compressor (fc/new-frame-compressor {} max-length)
+        compressed-length (fc/compress-frame! compressor buf length)
+        compressed (fc/compressed-buffer compressor)
+        inflated (fc/decompress-frame! (fc/new-frame-decompressor max-length) compressed 0 compressed-length)
+        decoder (sz/wrap-message-decoder inflated 0)]
+    (is (< 0 compressed-length length))
+    (is (= sz/compressed-message-id (sz/get-message-type compressed 0)))
+    (is (= 5 (sz/get-replica-version compressed 1)))
+    (is (= 5 (.replicaVersion decoder)))
+    (is (= 3 (.destId decoder)))
+    (is (= segments (persistent! (sz/into-segments! decoder (codec/build-codec {}) (direct-buffer-input) (transient [])))))
+    (is (< (:ratio (fc/compression-info compressor)) 0.85))))
+
+(deftest incompressible-frames-test
+  (let [rnd (java.util.Random. 42)
+        segments (vec (for [i (range 50)]
+                        {:v (let [bs (byte-array 100)] (.nextBytes rnd bs) bs)}))
+        [buf length] (encode-frame segments)
+        compressor (fc/new-frame-compressor {} max-length)]
+    (testing "frames that don't compress are sent as is"
+      (is (= -1 (fc/compress-frame! compressor buf length))))
+    (testing "compression is skipped after a poorly compressed frame"
+      (is (= -1 (fc/compress-frame! compressor buf length)))
+      (is (= 1 (:skipped-frames (fc/compression-info compressor)))))
+    (testing "small frames are never compressed"
+      (let [[small-buf small-length] (encode-frame [{:a 1}])]
+        (is (= -1 (fc/compress-frame! (fc/new-frame-compressor {} max-length) small-buf small-length)))))))
@@ -0,0 +1,44 @@
+(ns onyx.messaging.load-balance-test
+  (:require [onyx.messaging.load-balance :as lb]
+            [onyx.messaging.protocols.publisher :as pub]
+            [clojure.test :refer [deftest is testing]])
+  (:import [com.codahale.metrics Histogram UniformReservoir]))
+
+(defn publisher [window]
+  (reify pub/Publisher
+    (available-window [_] window)))
+
+(defn spread [balancer publishers n]
+  (frequencies (repeatedly n #(lb/choose balancer publishers))))
+
+(deftest available-window-test
+  (let [skew (Histogram. (UniformReservoir.))
+        balancer (lb/new-load-balancer :available-window {:load-balance-skew-percent skew})
+        fast (publisher 1.0)
+        slow (publisher 0.01)
+        counts (spread balancer [fast slow] 100)]
+    (testing "publishers with more available window are preferred"
+      (is (> (get counts fast 0) (* 10 (get counts slow 0)))))
+    (testing "the skew is recorded per batch"
+      (lb/next-batch! balancer)
+      (is (= 1 (.getCount skew)))
+      (is (pos? (.getMax (.getSnapshot skew))))))
+  (testing "equal windows are shared evenly within a batch"
+    (let [balancer (lb/new-load-balancer :available-window {})
+          pubs (vec (repeatedly 4 #(publisher 1.0)))
+          counts (spread balancer pubs 400)]
+      (is (every? #(< 75 % 125) (vals counts))))))
+
+(deftest random-test
+  (let [balancer (lb/new-load-balancer :random {})
+        pubs (vec (repeatedly 3 #(publisher 0.0)))]
+    (is (= (set pubs) (set (keys (spread balancer pubs 300)))))
+    (testing "assignments aren't tracked without a skew histogram"
+      (is (zero? (lb/assigned (.assignments ^onyx.messaging.load_balance.RandomBalancer balancer) 
+                              (first pubs))))))
+  (testing "the skew is recorded when the histogram is registered"
+    (let [skew (Histogram. (UniformReservoir.))
+          balancer (lb/new-load-balancer :random {:load-balance-skew-percent skew})]
+      (spread balancer (vec (repeatedly 3 #(publisher 0.0))) 300)
+      (lb/next-batch! balancer)
+      (is (= 1 (.getCount skew))))))
@@ -0,0 +1,54 @@
+(ns onyx.messaging.pipelined-output-test
+  (:require [clojure.test :refer [deftest is testing]]
+            [onyx.messaging.protocols.messenger :as m]
+            [onyx.messaging.protocols.publisher :as pub]
+            [onyx.plugin.messaging-output :as mo])
+  (:import [java.util ArrayDeque]))
+
+(defn stub-publisher [blocked? sent]
+  (reify pub/Publisher
+    (info [_] {})
+    (short-id [_] 0)
+    (short-circuit? [_] true)
+    (offer-short-circuit! [_ batch _]
+      (if @blocked?
+        -1
+        (do (swap! sent into (:segments batch))
+            1)))))
+
+(defn stub-messenger [replica-version]
+  (reify m/Messenger
+    (replica-version [_] @replica-version)
+    (epoch [_] 1)))
+
+(defn write-pending! [pending messenger]
+  (mo/write-pending! pending messenger nil nil nil nil 0 0 nil nil))
+
+(deftest pending-batches-are-written-in-order-test
+  (let [blocked? (atom true)
+        sent (atom [])
+        publisher (stub-publisher blocked? sent)
+        messenger (stub-messenger (atom 1))
+        pending (ArrayDeque.)]
+    (.addLast pending [1 [(list publisher [1 2] nil)]])
+    (.addLast pending [1 [(list publisher [3 4] nil)]])
+    (testing "back pressured batches stay pending"
+      (write-pending! pending messenger)
+      (is (= 2 (.size pending)))
+      (is (empty? @sent)))
+    (testing "batches are sent oldest first once the publisher recovers"
+      (reset! blocked? false)
+      (write-pending! pending messenger)
+      (is (.isEmpty pending))
+      (is (= [1 2 3 4] @sent)))))
+
+(deftest stale-batches-are-dropped-test
+  (let [sent (atom [])
+        publisher (stub-publisher (atom false) sent)
+        messenger (stub-messenger (atom 2))
+        pending (ArrayDeque.)]
+    (.addLast pending [1 [(list publisher [1 2] nil)]])
+    (.addLast pending [2 [(list publisher [3] nil)]])
+    (write-pending! pending messenger)
+    (is (.isEmpty pending))
+    (is (= [3] @sent))))
@@ -0,0 +1,32 @@
+(ns onyx.messaging.publisher-test
+  (:require [clojure.test :refer [deftest is testing]]
+            [com.stuartsierra.component :as component]
+            [onyx.messaging.aeron.messaging-group]
+            [onyx.messaging.aeron.messenger]
+            [onyx.messaging.aeron.publisher :as publisher]
+            [onyx.messaging.protocols.messenger :as m]
+            [onyx.messaging.protocols.publisher :as pub]
+            [onyx.test-helper :refer [load-config]])
+  (:import [java.util.concurrent.atomic AtomicLong]))
+
+(deftest publisher-start-stop-test
+  (let [peer-config (:peer-config (load-config))
+        peer-group (component/start (m/build-messenger-group peer-config))]
+    (try
+     (let [{:keys [client-pool short-circuit]} peer-group
+           monitoring {:publication-errors (AtomicLong.) :written-bytes (AtomicLong.)}
+           pub-info {:src-peer-id (java.util.UUID/randomUUID)
+                     :dst-task-id [(java.util.UUID/randomUUID) :out]
+                     :slot-id -1
+                     :site (m/get-peer-site peer-config)
+                     :short-id 1}
+           started (pub/start (publisher/new-publisher peer-config client-pool short-circuit 
+                                                       monitoring pub-info))]
+       (try
+        (testing "a started publisher has a publication and endpoint status"
+          (is (some? (pub/endpoint-status started)))
+          (is (not (pub/ready? started))))
+        (finally
+         (pub/stop started))))
+     (finally
+      (component/stop peer-group)))))
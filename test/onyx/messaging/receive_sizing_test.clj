@@ -0,0 +1,20 @@
+(ns onyx.messaging.receive-sizing-test
+  (:require [onyx.messaging.aeron.subscriber :as sub]
+            [clojure.test :refer [deftest is testing]]))
+
+(deftest next-fragment-limit-test
+  (testing "slow polls halve the limit, down to the minimum"
+    (is (= 500 (sub/next-fragment-limit 1000 10 true 2000000 1000000)))
+    (is (= sub/min-fragment-limit (sub/next-fragment-limit 20 10 true 2000000 1000000))))
+  (testing "polls that hit the limit without filling a batch double it, up to the maximum"
+    (is (= 2000 (sub/next-fragment-limit 1000 1000 false 10 1000000)))
+    (is (= sub/max-fragment-limit (sub/next-fragment-limit sub/max-fragment-limit 10000 false 10 1000000))))
+  (testing "the limit is kept when batches fill within the latency target"
+    (is (= 1000 (sub/next-fragment-limit 1000 1000 true 10 1000000)))
+    (is (= 1000 (sub/next-fragment-limit 1000 5 false 10 1000000)))))
+
+(deftest image-credit-test
+  (is (= 200 (sub/image-credit 200 1)))
+  (is (= 50 (sub/image-credit 200 4)))
+  (testing "every image may add at least one segment"
+    (is (= 1 (sub/image-credit 2 5)))))
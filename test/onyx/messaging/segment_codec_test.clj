@@ -0,0 +1,64 @@
+(ns onyx.messaging.segment-codec-test
+  (:require [onyx.messaging.protocols.segment-codec :as codec]
+            [onyx.messaging.segment-codec]
+            [onyx.messaging.direct-buffer-input :as dbi]
+            [onyx.messaging.direct-buffer-output :as dbo]
+            [clojure.test :refer [deftest is testing]])
+  (:import [org.agrona.concurrent UnsafeBuffer]))
+
+(defn roundtrip [segment-codec segment]
+  (let [buf (UnsafeBuffer. (byte-array 4096))
+        output (dbo/wrap! (dbo/direct-buffer-output) buf 0 (.capacity buf))
+        _ (codec/encode! segment-codec output segment)
+        length (dbo/position output)]
+    {:length length
+     :segment (codec/decode segment-codec (dbi/wrap! (dbi/direct-buffer-input) buf 0 length))}))
+
+(def flat-map-codec
+  (codec/build-codec {:onyx/name :in
+                      :onyx/segment-codec :flat-map
+                      :onyx/segment-schema {:id :long
+                                            :price :double
+                                            :active? :boolean
+                                            :name :string
+                                            :kind :keyword
+                                            :uuid :uuid
+                                            :tags :any}}))
+
+(deftest flat-map-codec-test
+  (let [segment {:id 1 :price 2.5 :active? true :name "event" :kind :a/b
+                 :uuid (java.util.UUID/randomUUID) :tags #{:x}}]
+    (testing "segments matching the schema"
+      (is (= segment (:segment (roundtrip flat-map-codec segment))))
+      (is (< (:length (roundtrip flat-map-codec segment))
+             (:length (roundtrip (codec/build-codec {}) segment)))))
+    (testing "missing keys and nil values"
+      (is (= {:id 1} (:segment (roundtrip flat-map-codec {:id 1}))))
+      (is (= {:id 1 :name nil} (:segment (roundtrip flat-map-codec {:id 1 :name nil})))))
+    (testing "undeclared keys"
+      (is (= (assoc segment :extra [1 2]) 
+             (:segment (roundtrip flat-map-codec (assoc segment :extra [1 2]))))))
+    (testing "values that don't match their declared type"
+      (is (= (assoc segment :id 1.0) 
+             (:segment (roundtrip flat-map-codec (assoc segment :id 1.0)))))
+      (is (= [1 2 3] (:segment (roundtrip flat-map-codec [1 2 3])))))))
+
+(defrecord Trade [id price])
+
+(deftest flat-map-codec-record-test
+  (testing "records keep their type"
+    (let [segment (->Trade 1 2.5)
+          decoded (:segment (roundtrip flat-map-codec segment))]
+      (is (= segment decoded))
+      (is (instance? Trade decoded))))
+  (testing "records with fields beyond the schema"
+    (let [segment (assoc (->Trade 1 2.5) :extra [1 2])
+          decoded (:segment (roundtrip flat-map-codec segment))]
+      (is (= segment decoded))
+      (is (instance? Trade decoded)))))
+
+(deftest flat-map-codec-schema-test
+  (is (thrown? clojure.lang.ExceptionInfo
+               (codec/build-codec {:onyx/name :in :onyx/segment-codec :flat-map})))
+  (is (thrown? clojure.lang.ExceptionInfo
+               (codec/build-codec {:onyx/name :in :onyx/segment-codec :unknown}))))
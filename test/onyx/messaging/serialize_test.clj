@@ -0,0 +1,84 @@
+(ns onyx.messaging.serialize-test
+  (:require [onyx.messaging.serialize :as sz]
+            [onyx.messaging.direct-buffer-input :refer [direct-buffer-input]]
+            [onyx.messaging.direct-buffer-output :refer [direct-buffer-output]]
+            [onyx.messaging.protocols.segment-codec :as codec]
+            [onyx.messaging.segment-codec]
+            [clojure.test :refer [deftest is testing]])
+  (:import [org.agrona.concurrent UnsafeBuffer]
+           [onyx.serialization BarrierEncoder BarrierDecoder]))
+
+(defn encode-decode [segments max-bytes max-count]
+  (let [buf (UnsafeBuffer. (byte-array 10000))
+        segment-codec (codec/build-codec {})
+        encoder (-> (sz/wrap-message-encoder buf 1)
+                    (.replicaVersion 5)
+                    (.destId 3))
+        n-encoded (sz/encode-segments! encoder segment-codec (direct-buffer-output) segments 0 max-bytes max-count)
+        decoder (sz/wrap-message-decoder buf 1)]
+    {:n-encoded n-encoded
+     :length (inc (.encodedLength encoder))
+     :replica-version (.replicaVersion decoder)
+     :dest-id (.destId decoder)
+     :segments (persistent! (sz/into-segments! decoder segment-codec (direct-buffer-input) (transient [])))}))
+
+(deftest segments-roundtrip-test
+  (let [segments [{:a 1} {:b "hello" :c [1 2 3]} {:d (byte-array 5)} {}]
+        {:keys [n-encoded replica-version dest-id] :as decoded} (encode-decode segments 10000 100)
+        decoded (:segments decoded)]
+    (is (= 4 n-encoded))
+    (is (= 5 replica-version))
+    (is (= 3 dest-id))
+    (is (= (count segments) (count decoded)))
+    (is (= (map #(dissoc % :d) segments) (map #(dissoc % :d) decoded)))
+    (is (= 5 (alength ^bytes (:d (nth decoded 2)))))))
+
+(deftest segments-message-limits-test
+  (let [segments (vec (repeat 100 {:v (apply str (repeat 50 "x"))}))]
+    (testing "messages are cut at the byte budget"
+      (let [{:keys [n-encoded length] :as decoded} (encode-decode segments 1000 1000)]
+        (is (< 0 n-encoded 100))
+        (is (<= length 1000))
+        (is (= (take n-encoded segments) (:segments decoded)))))
+    (testing "messages are cut at the segment count"
+      (is (= 10 (:n-encoded (encode-decode segments 10000 10)))))
+    (testing "a segment larger than the budget is encoded alone"
+      (is (= 1 (:n-encoded (encode-decode segments 10 1000)))))
+    (testing "a segment larger than the buffer is rejected"
+      (is (thrown? clojure.lang.ExceptionInfo
+                   (encode-decode [{:v (byte-array 20000)}] 10000 10))))))
+
+(deftest barrier-roundtrip-test
+  (let [buf (sz/control-buffer)
+        opts {:completed? true :recover-coordinates {:tx 1}}
+        payload (sz/recover-payload opts)
+        buf (sz/barrier-buffer buf payload)
+        length (sz/encode-barrier! buf 0 (BarrierEncoder.) 7 3 12 opts payload)
+        decoder (sz/wrap-barrier-decoder (BarrierDecoder.) buf 1)]
+    (is (= (sz/barrier-length payload) length))
+    (is (= sz/barrier-id (sz/get-message-type buf 0)))
+    (is (= 7 (sz/get-replica-version buf 1)))
+    (is (= 12 (sz/get-dest-id buf 1 sz/barrier-id)))
+    (is (= 3 (.epoch decoder)))
+    (is (sz/flag->opt (.completed decoder)))
+    (is (= {:tx 1} (sz/get-recover-coordinates decoder)))))
+
+(deftest peer-id-matches-test
+  (let [uuid (java.util.UUID/randomUUID)]
+    (testing "uuid peers"
+      (is (sz/peer-id-matches? uuid (sz/peer-id-type uuid) (sz/peer-id-msb uuid) (sz/peer-id-lsb uuid)))
+      (is (not (sz/peer-id-matches? (java.util.UUID/randomUUID) (sz/peer-id-type uuid)
+                                    (sz/peer-id-msb uuid) (sz/peer-id-lsb uuid)))))
+    (testing "coordinator peers"
+      (let [coord [:coordinator uuid]]
+        (is (sz/peer-id-matches? coord (sz/peer-id-type coord) (sz/peer-id-msb coord) (sz/peer-id-lsb coord)))
+        (is (not (sz/peer-id-matches? uuid (sz/peer-id-type coord) (sz/peer-id-msb coord) (sz/peer-id-lsb coord))))))
+    (testing "ids that can't be encoded exactly are rejected"
+      (is (thrown? clojure.lang.ExceptionInfo (sz/peer-id-type :p1)))
+      (is (thrown? clojure.lang.ExceptionInfo (sz/peer-id-lsb [:coordinator :p1]))))))
+
+(deftest direct-buffer-input-read-line-test
+  (let [bs (.getBytes "one\ntwo\r\nthree\rfour" "ISO-8859-1")
+        input (onyx.messaging.direct-buffer-input/wrap! (direct-buffer-input) (UnsafeBuffer. bs) 0 (alength bs))]
+    (is (= ["one" "two" "three" "four" nil]
+           (repeatedly 5 #(.readLine ^java.io.DataInput input))))))
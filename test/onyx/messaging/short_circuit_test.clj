@@ -0,0 +1,46 @@
+(ns onyx.messaging.short-circuit-test
+  (:require [onyx.messaging.aeron.short-circuit :as sc]
+            [onyx.messaging.aeron.subscriber :refer [poll-short-circuit]]
+            [onyx.messaging.aeron.int2objectmap :refer [int2objectmap]]
+            [clojure.test :refer [deftest is testing]])
+  (:import [org.agrona.concurrent ManyToOneConcurrentArrayQueue]))
+
+(deftest registry-test
+  (let [registry (sc/new-registry)
+        k (sc/stream-key [:job :task] 0 {:address "localhost" :port 40200})
+        queues (sc/stream-queues registry k)
+        q1 (sc/new-queue)
+        q2 (sc/new-queue)]
+    (sc/register! registry k q1)
+    (sc/register! registry k q2)
+    (testing "publishers see subscribers registered after they looked up the stream"
+      (is (= [q1 q2] (vec queues))))
+    (testing "batches go to the least loaded queue"
+      (is (sc/offer-batch! queues (sc/->ShortCircuitBatch 1 0 [{:n 1}])))
+      (is (sc/offer-batch! queues (sc/->ShortCircuitBatch 1 0 [{:n 2}])))
+      (is (= 1 (.size ^ManyToOneConcurrentArrayQueue q1) (.size ^ManyToOneConcurrentArrayQueue q2))))
+    (testing "barriers go to every queue"
+      (is (empty? (sc/offer-barrier! queues (sc/->ShortCircuitBarrier 1 1 0 {}))))
+      (is (= 2 (.size ^ManyToOneConcurrentArrayQueue q1) (.size ^ManyToOneConcurrentArrayQueue q2))))
+    (sc/unregister! registry k q1)
+    (is (= [q2] (vec queues)))))
+
+(deftest poll-short-circuit-test
+  (let [queue (sc/new-queue)
+        status-pubs (int2objectmap)]
+    (.offer queue (sc/->ShortCircuitBatch 1 0 [{:n 0}]))
+    (.offer queue (sc/->ShortCircuitBatch 2 0 [{:n 1} {:n 2}]))
+    (.offer queue (sc/->ShortCircuitBatch 2 0 [{:n 3}]))
+    (.offer queue (sc/->ShortCircuitBarrier 2 1 0 {}))
+    (.offer queue (sc/->ShortCircuitBatch 3 0 [{:n 4}]))
+    (testing "batches from older replica versions are dropped, and reading stops at the batch size"
+      (let [[batch barrier] (poll-short-circuit queue status-pubs 2 1)]
+        (is (= [{:n 1} {:n 2}] (persistent! batch)))
+        (is (nil? barrier))))
+    (testing "barriers from unknown sources are dropped"
+      (let [[batch barrier] (poll-short-circuit queue status-pubs 2 10)]
+        (is (= [{:n 3}] (persistent! batch)))
+        (is (nil? barrier))))
+    (testing "batches from newer replica versions are left in the queue"
+      (is (= [nil nil] (poll-short-circuit queue status-pubs 2 10)))
+      (is (= 1 (.size queue))))))
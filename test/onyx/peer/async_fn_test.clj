@@ -0,0 +1,94 @@
+(ns onyx.peer.async-fn-test
+  (:require [clojure.core.async :as a]
+            [clojure.test :refer [deftest is testing]]
+            [onyx.peer.async-fn :as af]
+            [onyx.protocol.task-state :as ts])
+  (:import [java.util.concurrent CompletableFuture]))
+
+(defn future-fn
+  "Returns an async fn, and the futures it has returned by segment :n."
+  []
+  (let [futures (atom {})]
+    [(fn [{:keys [n]}]
+       (let [fut (CompletableFuture.)]
+         (swap! futures assoc n fut)
+         fut))
+     futures]))
+
+(defn roots [results]
+  (map (comp :n :root) results))
+
+(defn stub-state
+  "A task state holding only an event, that records whether it advanced."
+  [event]
+  (let [event (atom event)
+        advanced (atom 0)]
+    [(reify ts/PTaskStateMachine
+       (get-event [this] @event)
+       (set-event! [this new-event] (reset! event new-event) this)
+       (advance [this] (swap! advanced inc) this))
+     advanced]))
+
+(deftest bounded-in-flight-test
+  (let [[f futures] (future-fn)
+        calls (af/new-async-calls {:onyx/async-max-in-flight 2})
+        batch (mapv (fn [n] {:n n}) (range 3))
+        [state advanced] (stub-state {:onyx.core/batch batch})]
+    (af/apply-async-fn calls f state)
+    (is (zero? @advanced))
+    (is (= #{0 1} (set (keys @futures))))
+    (testing "the batch is only launched as far as max-in-flight allows"
+      (af/apply-async-fn calls f state)
+      (is (zero? @advanced))
+      (is (= #{0 1} (set (keys @futures)))))
+    (testing "completed calls free capacity for the rest of the batch"
+      (.complete ^CompletableFuture (@futures 0) {:n 10})
+      (af/apply-async-fn calls f state)
+      (is (= 1 @advanced))
+      (is (= #{0 1 2} (set (keys @futures))))
+      (is (= [0] (roots (:tree (:onyx.core/results (ts/get-event state))))))
+      (is (= 2 (af/in-flight calls))))))
+
+(deftest ordered-and-unordered-results-test
+  (let [batch (mapv (fn [n] {:n n}) (range 3))]
+    (testing "ordered results wait for earlier calls"
+      (let [[f futures] (future-fn)
+            calls (af/new-async-calls {})]
+        (af/launch! calls f batch)
+        (.complete ^CompletableFuture (@futures 1) {:n 11})
+        (is (empty? (af/collect! calls)))
+        (.complete ^CompletableFuture (@futures 0) [{:n 10} {:n 20}])
+        (let [results (af/collect! calls)]
+          (is (= [0 1] (roots results)))
+          (is (= [{:n 10} {:n 20}] (:leaves (first results)))))
+        (is (af/pending? calls))))
+    (testing "unordered results are emitted as calls complete"
+      (let [[f futures] (future-fn)
+            calls (af/new-async-calls {:onyx/async-ordered? false})]
+        (af/launch! calls f batch)
+        (.complete ^CompletableFuture (@futures 2) {:n 12})
+        (is (= [2] (roots (af/collect! calls))))
+        (is (= 2 (af/in-flight calls)))))))
+
+(deftest channels-and-exceptions-test
+  (let [calls (af/new-async-calls {})
+        ch (a/chan 1)
+        f (fn [{:keys [n]}]
+            (case (int n)
+              0 ch
+              1 (throw (ex-info "thrown" {}))
+              2 (doto (CompletableFuture.)
+                  (.completeExceptionally (ex-info "failed" {})))))]
+    (af/launch! calls f (mapv (fn [n] {:n n}) (range 3)))
+    (a/>!! ch {:n 10})
+    (let [results (loop [results []]
+                    (if (< (count results) 3)
+                      (do (Thread/sleep 1)
+                          (recur (into results (af/collect! calls))))
+                      results))]
+      (is (= [0 1 2] (roots results)))
+      (is (= [{:n 10}] (:leaves (first results))))
+      (is (= ["thrown" "failed"]
+             (map (fn [result]
+                    (.getMessage ^Throwable (:exception (ex-data (first (:leaves result))))))
+                  (rest results)))))))
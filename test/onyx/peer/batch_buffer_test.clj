@@ -0,0 +1,21 @@
+(ns onyx.peer.batch-buffer-test
+  (:require [clojure.test :refer [deftest is testing]]
+            [onyx.peer.read-batch :as rb]))
+
+(deftest batch-buffer-test
+  (let [buffer (rb/new-batch-buffer 10)]
+    (testing "a batch fills across passes of the same iteration"
+      (rb/start! buffer :iteration-1)
+      (rb/add-all! buffer [{:n 1} {:n 2}])
+      (let [start-ns (rb/started-ns buffer)]
+        (rb/start! buffer :iteration-1)
+        (rb/add! buffer {:n 3})
+        (is (= start-ns (rb/started-ns buffer))))
+      (is (= 3 (rb/buffered buffer)))
+      (is (= [{:n 1} {:n 2} {:n 3}] (rb/take-batch! buffer)))
+      (is (zero? (rb/buffered buffer))))
+    (testing "segments from an abandoned iteration are dropped"
+      (rb/start! buffer :iteration-2)
+      (rb/add! buffer {:n 4})
+      (rb/start! buffer :iteration-3)
+      (is (= [] (rb/take-batch! buffer))))))
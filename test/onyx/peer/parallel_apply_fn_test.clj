@@ -0,0 +1,27 @@
+(ns onyx.peer.parallel-apply-fn-test
+  (:require [clojure.test :refer [deftest is testing]]
+            [onyx.peer.transform :as transform]))
+
+(defn slow-inc [{:keys [n] :as segment}]
+  (when (even? n)
+    (Thread/sleep 1))
+  (if (= n 13)
+    (throw (ex-info "unlucky" {}))
+    (assoc segment :n (inc n))))
+
+(deftest parallel-apply-fn-test
+  (let [batch (mapv (fn [n] {:n n}) (range 100))
+        event {:onyx.core/batch batch}
+        serial (transform/apply-fn-single slow-inc event)
+        parallel ((transform/apply-fn-parallel 4) slow-inc event)
+        results (:tree (:onyx.core/results parallel))]
+    (testing "results keep the order of the batch"
+      (is (= batch (map :root results)))
+      (is (= (map (comp :n first :leaves) (remove #(= 13 (:n (:root %))) results))
+             (map inc (remove #{13} (range 100))))))
+    (testing "exceptions are wrapped as on the task thread"
+      (is (= {:exception-message "unlucky" :segment {:n 13}}
+             (let [e (first (:leaves (nth results 13)))]
+               {:exception-message (.getMessage ^Throwable (:exception (ex-data e)))
+                :segment (:segment (ex-data e))}))))
+    (is (= (count (:tree (:onyx.core/results serial))) (count results)))))
@@ -0,0 +1,70 @@
+(ns onyx.peer.task-fusion-test
+  (:require [clojure.test :refer [deftest is testing]]
+            [onyx.static.planning :as planning]
+            [onyx.peer.fusion :as fusion]))
+
+(defn parse [segment] (assoc segment :parsed? true))
+
+(defn enrich [k segment] (assoc segment k true))
+
+(defn split [segment] [segment segment])
+
+(defn fail [segment]
+  (throw (ex-info "failed" {})))
+
+(defn function-task [task-name f]
+  {:onyx/name task-name
+   :onyx/fn f
+   :onyx/type :function
+   :onyx/fuse? true
+   :onyx/batch-size 20})
+
+(def job
+  {:workflow [[:in :parse] [:parse :enrich] [:enrich :filter] [:filter :out]]
+   :catalog [{:onyx/name :in :onyx/type :input :onyx/plugin :p :onyx/medium :m :onyx/batch-size 20}
+             (function-task :parse ::parse)
+             (assoc (function-task :enrich ::enrich) :onyx/params [:enrich/key] :enrich/key :enriched?)
+             (function-task :filter :clojure.core/identity)
+             {:onyx/name :out :onyx/type :output :onyx/plugin :p :onyx/medium :m :onyx/batch-size 20}]
+   :lifecycles []
+   :windows []
+   :flow-conditions []})
+
+(deftest fuse-chain-test
+  (let [fused (planning/fuse-tasks job)
+        parse-task (planning/find-task (:catalog fused) :parse)]
+    (is (= [[:in :parse] [:parse :out]] (:workflow fused)))
+    (is (= [:in :parse :out] (map :onyx/name (:catalog fused))))
+    (is (= [:enrich :filter] (map :onyx/name (:onyx/fused-tasks parse-task))))
+    (is (= 3 (count (planning/discover-tasks (:catalog fused) (:workflow fused)))))))
+
+(deftest unfusable-tasks-test
+  (testing "tasks that don't opt in are not fused"
+    (let [job (update job :catalog (partial mapv #(dissoc % :onyx/fuse?)))]
+      (is (= job (planning/fuse-tasks job)))))
+  (testing "grouped tasks are not fused"
+    (let [job (update job :catalog (partial mapv #(cond-> %
+                                                    (= :enrich (:onyx/name %))
+                                                    (assoc :onyx/group-by-key :id :onyx/flux-policy :kill))))]
+      (is (= (:workflow job) (:workflow (planning/fuse-tasks job))))))
+  (testing "tasks with a task specific lifecycle are not fused"
+    (let [job (assoc job :lifecycles [{:lifecycle/task :filter :lifecycle/calls ::calls}])]
+      (is (= [[:in :parse] [:parse :filter] [:filter :out]] (:workflow (planning/fuse-tasks job))))))
+  (testing "tasks that fan out are not fused"
+    (let [job (update job :workflow conj [:parse :out])]
+      (is (= [:parse :enrich] (get-in (planning/fuse-tasks job) [:workflow 1]))))))
+
+(deftest fused-fn-test
+  (let [task-map (planning/find-task (:catalog (planning/fuse-tasks job)) :parse)
+        event {:onyx.core/task-map (update task-map :onyx/fused-tasks conj (function-task :split ::split))
+               :onyx.core/peer-opts {}}
+        f (fusion/fuse-fn event parse)]
+    (is (= [{:id 1 :parsed? true :enriched? true} {:id 1 :parsed? true :enriched? true}]
+           (f {:id 1})))
+    (testing "exceptions name the fused task that threw them"
+      (let [f (fusion/fuse-fn (update-in event [:onyx.core/task-map :onyx/fused-tasks]
+                                         conj (function-task :fail ::fail))
+                              parse)
+            e (try (f {:id 1}) (catch clojure.lang.ExceptionInfo e e))]
+        (is (= :fail (:onyx/fused-task (ex-data e))))
+        (is (= "failed" (.getMessage (.getCause ^Throwable e))))))))
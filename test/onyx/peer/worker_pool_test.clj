@@ -0,0 +1,69 @@
+(ns onyx.peer.worker-pool-test
+  (:require [clojure.test :refer [deftest is testing]]
+            [com.stuartsierra.component :as component]
+            [onyx.peer.worker-pool :as wp]))
+
+(defn countdown-fn
+  "Returns a run fn that blocks on every other slice, and is done after n
+   slices that progressed."
+  [n done]
+  (let [remaining (atom n)
+        blocked? (atom false)]
+    (fn []
+      (cond (zero? @remaining) (do (deliver done true) :done)
+            (swap! blocked? not) :blocked
+            :else (do (swap! remaining dec) :progress)))))
+
+(deftest pooled-machines-run-to-completion-test
+  (let [pool (component/start (wp/worker-pool {:onyx.peer/worker-pool-size 2}))
+        dones (repeatedly 10 promise)]
+    (try
+      (is (wp/pooled? pool))
+      (run! #(wp/submit! pool (countdown-fn 100 %) nil) dones)
+      (is (every? #(deref % 10000 false) dones))
+      (finally
+        (component/stop pool)))))
+
+(deftest stop-abandons-scheduled-machines-test
+  (let [pool (component/start (wp/worker-pool {:onyx.peer/worker-pool-size 1
+                                               :onyx.peer/stop-task-timeout-ms 100}))
+        entered (promise)
+        interrupted (promise)
+        abandoned (promise)]
+    (wp/submit! pool
+                (fn []
+                  (deliver entered true)
+                  (try (Thread/sleep 60000)
+                       (catch InterruptedException e
+                         (deliver interrupted true)
+                         (throw e))))
+                nil)
+    (wp/submit! pool (constantly :blocked) #(deliver abandoned true))
+    (is (deref entered 10000 false))
+    (component/stop pool)
+    (testing "a worker stuck in a slice is interrupted"
+      (is (deref interrupted 1000 false)))
+    (testing "machines left in the run queues are abandoned"
+      (is (deref abandoned 1000 false)))))
+
+(deftest thread-per-task-by-default-test
+  (let [pool (component/start (wp/worker-pool {}))]
+    (is (not (wp/pooled? pool)))
+    (component/stop pool)))
+
+(deftest blocked-machines-back-off-test
+  (let [blocked (wp/->Scheduled (constantly :blocked) nil 100 1000 0 0)]
+    (is (wp/ready? blocked 0))
+    (is (= :blocked (wp/run-slice! blocked 0)))
+    (is (not (wp/ready? blocked 50)))
+    (is (wp/ready? blocked 100))
+    (testing "back off doubles up to the maximum"
+      (dotimes [_ 10] (wp/run-slice! blocked 0))
+      (is (not (wp/ready? blocked 999)))
+      (is (wp/ready? blocked 1000)))))
+
+(deftest steal-test
+  (let [queues (object-array [(java.util.concurrent.ConcurrentLinkedDeque. [:a :b])
+                              (java.util.concurrent.ConcurrentLinkedDeque.)])]
+    (is (= :b (wp/steal queues 1)))
+    (is (nil? (wp/steal queues 0)))))
@@ -0,0 +1,49 @@
+(ns onyx.plugin.messaging-output-test
+  (:require [onyx.plugin.messaging-output :as mo]
+            [onyx.messaging.protocols.publisher :as pub]
+            [onyx.messaging.protocols.segment-codec :as codec]
+            [onyx.messaging.segment-codec]
+            [onyx.messaging.direct-buffer-output :refer [direct-buffer-output]]
+            [clojure.test :refer [deftest is testing]])
+  (:import [org.agrona.concurrent UnsafeBuffer]
+           [onyx.serialization MessageEncoder]))
+
+(defn recording-publisher [offered]
+  (reify pub/Publisher
+    (short-id [_] 3)
+    (info [_] {})
+    (offer! [_ buf length epoch]
+      (swap! offered conj length)
+      length)))
+
+(defn send-all
+  "Offers segments until all of them are sent. Returns
+   [segment count, frame length] for each frame."
+  [segments max-bytes max-count]
+  (let [offered (atom [])
+        publisher (recording-publisher offered)
+        encoder (MessageEncoder.)
+        buffer (UnsafeBuffer. (byte-array 10000))
+        output (direct-buffer-output)
+        segment-codec (codec/build-codec {})]
+    (loop [segments (vec segments) sent []]
+      (if (empty? segments)
+        (map vector sent @offered)
+        (let [n (mo/offer-segments 1 1 encoder buffer output segment-codec segments publisher
+                                   max-bytes max-count nil nil)]
+          (recur (subvec segments n) (conj sent n)))))))
+
+(deftest offer-segments-packing-test
+  (let [segments (repeat 100 {:v (byte-array 100)})]
+    (testing "frames are packed up to the byte budget"
+      (let [frames (send-all segments 1000 1000)]
+        (is (= 100 (reduce + (map first frames))))
+        (is (every? #(<= (second %) 1000) frames))
+        (is (< 1 (first (first frames)) 10))))
+    (testing "frames are capped by segment count"
+      (let [frames (send-all segments 100000 10)]
+        (is (= 10 (count frames)))
+        (is (every? #(= 10 (first %)) frames))))
+    (testing "segments larger than the budget are sent alone"
+      (let [frames (send-all [{:v (byte-array 10)} {:v (byte-array 500)} {:v (byte-array 10)}] 200 1000)]
+        (is (= [1 1 1] (map first frames)))))))
@@ -0,0 +1,71 @@
+(ns onyx.windowing.combiner-test
+  (:require [clojure.test :refer [deftest is testing]]
+            [onyx.windowing.aggregation]
+            [onyx.windowing.combiner :as cb]
+            [onyx.windowing.window-compile :as wc]
+            [onyx.peer.window-state :as ws]
+            [onyx.types :refer [new-state-event]]))
+
+(def task-map
+  {:onyx/name :sum-ages
+   :onyx/fn :clojure.core/identity
+   :onyx/group-by-key :name
+   :onyx/combine? true})
+
+(def window
+  {:window/id :sum-ages
+   :window/task :sum-ages
+   :window/type :fixed
+   :window/aggregation [:onyx.windowing.aggregation/sum :age]
+   :window/window-key :event-time
+   :window/range [5 :minutes]})
+
+(def segments
+  [{:name "a" :age 21 :event-time #inst "2015-09-13T03:00:00.829-00:00"}
+   {:name "a" :age 12 :event-time #inst "2015-09-13T03:04:00.829-00:00"}
+   {:name "b" :age 3  :event-time #inst "2015-09-13T03:01:00.829-00:00"}
+   {:name "a" :age 64 :event-time #inst "2015-09-13T03:06:00.829-00:00"}])
+
+(defn merge-into-window [window-state events]
+  (reduce (fn [window-state state-event]
+            (first (ws/fire-state-event [window-state] state-event)))
+          window-state
+          events))
+
+(deftest combined-window-test
+  (is (= window (cb/combined-window task-map [window])))
+  (is (nil? (cb/combined-window (dissoc task-map :onyx/combine?) [window])))
+  (testing "only the listed aggregations can be combined"
+    (is (thrown? clojure.lang.ExceptionInfo
+                 (cb/combined-window task-map [(assoc window :window/aggregation :onyx.windowing.aggregation/conj)]))))
+  (testing "the receiving task must not transform segments"
+    (is (thrown? clojure.lang.ExceptionInfo
+                 (cb/combined-window (assoc task-map :onyx/fn ::inc-age) [window])))))
+
+(deftest combine-and-merge-test
+  (let [combiner (cb/new-combiner task-map window)
+        _ (run! #(cb/combine! combiner %) segments)
+        drained (cb/drain! combiner)
+        partials (map second drained)
+        ungrouped (wc/resolve-window-state window [] {})
+        state-event (new-state-event :new-segment {})]
+    (testing "one partial per group key and extent"
+      (is (= 3 (count drained)))
+      (is (= #{"a" "b"} (set (map first drained))))
+      (is (every? cb/partial? partials))
+      (is (empty? (cb/drain! combiner))))
+    (testing "partials are split out of the batch"
+      (let [[batch split] (cb/split-partials (into [{:name "c"}] partials))]
+        (is (= [{:name "c"}] batch))
+        (is (= (map cb/partial-key partials) split))))
+    (testing "merging partials matches aggregating the raw segments"
+      (let [raw (merge-into-window ungrouped
+                                   (map #(assoc state-event :segment %)
+                                        (filter (comp #{"a"} :name) segments)))
+            combined (merge-into-window ungrouped
+                                        (->> partials
+                                             (map cb/partial-key)
+                                             (filter (comp #{"a"} :group-key))
+                                             (map #(assoc state-event :combined %))))]
+        (is (= (:state raw) (:state combined)))
+        (is (= #{33 64} (set (vals (:state combined)))))))))